@@ -0,0 +1,112 @@
+package CosmOS;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+
+/* ARCReplacementPolicy:
+ * Adaptive Replacement Cache. The resident pages are split between T1,
+ * pages used once since they came in (recency), and T2, pages used
+ * again (frequency). B1 and B2 remember the pages recently evicted from
+ * each. A fault on a page in B1 means T1 was too small, so its target
+ * size p grows; a fault on a page in B2 shrinks it. The victim is taken
+ * from T1 while it is at least p pages, from T2 otherwise.
+ *
+ * The MMU only sets a referenced bit, it can't report every hit, so
+ * the lists are kept as clocks as in CAR: a page at the head of T1 that
+ * was referenced moves to T2, and one at the head of T2 goes back to
+ * its tail, with the bit cleared in both cases.
+ *
+ * The capacity c is the most frames the policy has held at once.
+ * Pages are identified by the key given to add(), so a page is found
+ * in B1 or B2 after it was evicted.
+ * */
+
+public class ARCReplacementPolicy implements PageReplacementPolicy {
+	private LinkedList<Integer> t1 = new LinkedList<Integer>(), t2 = new LinkedList<Integer>(); //frames, the hand at the head
+	private LinkedHashSet<Integer> b1 = new LinkedHashSet<Integer>(), b2 = new LinkedHashSet<Integer>(); //keys, oldest first
+	
+	private int frameKey[]; //indexed by frame number
+	private int p, capacity;
+	
+	public ARCReplacementPolicy(int numFrames){
+		frameKey = new int[numFrames];
+	}
+	
+	public void add(int frameNum, int key){
+		frameKey[frameNum] = key;
+		
+		if(b1.contains(key)){ //T1 was too small
+			p = Math.min(capacity, p + Math.max(b2.size() / b1.size(), 1));
+			b1.remove(key);
+			t2.add(frameNum);
+		} else if(b2.contains(key)){ //T2 was too small
+			p = Math.max(0, p - Math.max(b1.size() / b2.size(), 1));
+			b2.remove(key);
+			t2.add(frameNum);
+		} else {
+			t1.add(frameNum);
+		}
+		
+		capacity = Math.max(capacity, size());
+		
+		//Forget the oldest evicted pages, the history is at most c pages per list
+		while(t1.size() + b1.size() > capacity && !b1.isEmpty())
+			removeOldest(b1);
+		
+		while(size() + b1.size() + b2.size() > 2*capacity && !b2.isEmpty())
+			removeOldest(b2);
+	}
+	
+	public void remove(int frameNum){
+		if(!t1.remove(Integer.valueOf(frameNum)))
+			t2.remove(Integer.valueOf(frameNum));
+	}
+	
+	public int selectVictim(Pager pager){
+		while(!t1.isEmpty() || !t2.isEmpty()){ //ends within two turns, every page passed over loses its bit
+			if(!t1.isEmpty() && (t1.size() >= Math.max(1, p) || t2.isEmpty())){
+				int frameNum = t1.poll();
+				
+				if(!pager.testAndClearReferenced(frameNum)){
+					b1.add(frameKey[frameNum]);
+					return frameNum;
+				}
+				
+				t2.add(frameNum); //used again
+			} else {
+				int frameNum = t2.poll();
+				
+				if(!pager.testAndClearReferenced(frameNum)){
+					b2.add(frameKey[frameNum]);
+					return frameNum;
+				}
+				
+				t2.add(frameNum);
+			}
+		}
+		
+		return -1;
+	}
+	
+	public void onFault(Pager pager){ /* not used */ }
+	
+	public int size(){ return t1.size() + t2.size(); }
+	
+	public int[] frames(){
+		LinkedList<Integer> all = new LinkedList<Integer>(t1);
+		all.addAll(t2);
+		
+		return FIFOReplacementPolicy.toArray(all);
+	}
+	
+	/* getTarget - Target size of T1 */
+	public int getTarget(){ return p; }
+	
+	public String getName(){ return "arc"; }
+	
+	private static void removeOldest(LinkedHashSet<Integer> history){
+		Iterator<Integer> it = history.iterator();
+		it.next();
+		it.remove();
+	}
+}
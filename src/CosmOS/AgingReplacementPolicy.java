@@ -0,0 +1,63 @@
+package CosmOS;
+import java.util.LinkedList;
+
+/* AgingReplacementPolicy:
+ * Approximates LRU with an 8 bit counter per frame. On every page fault
+ * the counters are shifted right and the referenced bit of the page is
+ * moved into the top bit, then cleared; the page with the lowest
+ * counter has gone the longest without being used and is evicted, the
+ * oldest one first on a tie.
+ *
+ * The counters are sampled at page faults rather than on a clock tick,
+ * so the interval is the time between faults, which is when the
+ * recency of the pages matters.
+ * */
+
+public class AgingReplacementPolicy implements PageReplacementPolicy {
+	private static final int COUNTER_BITS = 8;
+	
+	private LinkedList<Integer> resident = new LinkedList<Integer>(); //oldest first
+	private int age[]; //indexed by frame number
+	
+	public AgingReplacementPolicy(int numFrames){
+		age = new int[numFrames];
+	}
+	
+	public void add(int frameNum, int key){
+		age[frameNum] = 1 << (COUNTER_BITS-1); //just used
+		resident.add(frameNum);
+	}
+	
+	public void remove(int frameNum){ resident.remove(Integer.valueOf(frameNum)); }
+	
+	public int selectVictim(Pager pager){
+		if(resident.isEmpty())
+			return -1;
+		
+		int victim = resident.peek();
+		
+		for(int frameNum : resident){
+			if(age[frameNum] < age[victim])
+				victim = frameNum;
+		}
+		
+		resident.remove(Integer.valueOf(victim));
+		return victim;
+	}
+	
+	/* onFault - Shifts the referenced bits into the counters */
+	public void onFault(Pager pager){
+		for(int frameNum : resident){
+			age[frameNum] >>>= 1;
+			
+			if(pager.testAndClearReferenced(frameNum))
+				age[frameNum] |= 1 << (COUNTER_BITS-1);
+		}
+	}
+	
+	public int size(){ return resident.size(); }
+	
+	public int[] frames(){ return FIFOReplacementPolicy.toArray(resident); }
+	
+	public String getName(){ return "aging"; }
+}
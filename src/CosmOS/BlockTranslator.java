@@ -0,0 +1,147 @@
+package CosmOS;
+
+/* BlockTranslator:
+ * Second execution tier of the Processor. Basic blocks that are
+ * entered often are translated into a CompiledBlock, a chain of
+ * Op objects that work directly on the registers of the Processor
+ * and only call the Memory for loads, stores and the stack. Running
+ * a compiled block skips the fetch, the decoding and the opcode
+ * switches of the interpreter.
+ *
+ * A block starts at the instruction it was entered at and ends with
+ * the first branch, CALL or ACT (0x37 - 0x3D), at the end of its
+ * frame, or with the last instruction that can be translated.
+ *
+ * The semantics of every Op mirror Processor.dispatch() exactly.
+ * */
+
+public class BlockTranslator {
+	public static final int	HOT_THRESHOLD = 16,
+							MAX_BLOCK_LENGTH = 64;
+	
+	private static final int	CC=0x13, FL=0x19;
+	
+	private static final int	CARRY = 0, ZERO = 1, SIGN = 2;
+	
+	private Processor cpu;
+	private Memory M;
+	private InstructionCache iCache;
+	
+	public BlockTranslator(Processor p, Memory mem, InstructionCache cache){
+		cpu = p;
+		M = mem;
+		iCache = cache;
+	}
+	
+	/* endsBlock - Returns true if the given opcode transfers control */
+	public static boolean endsBlock(byte opcode){
+		return opcode >= 0x37 && opcode <= 0x3D;
+	}
+	
+	/* translate - Translates the basic block starting at the given offset
+	 * of the given frame, and registers it with the decoded frame.
+	 * Returns null if not even the first instruction can be translated.
+	 * */
+	public CompiledBlock translate(int frameNum, int entryOffset){
+		int base = frameNum * InstructionCache.FRAME_SIZE;
+		CompiledBlock block = new CompiledBlock(entryOffset, MAX_BLOCK_LENGTH);
+		InstructionCache.DecodedFrame frame = null;
+		int offset = entryOffset;
+		
+		while(block.length < MAX_BLOCK_LENGTH && offset < InstructionCache.FRAME_SIZE){
+			frame = iCache.lookup(base + offset);
+			if(frame == null)
+				break;
+			
+			byte opcode = frame.opcode[offset];
+			CompiledBlock.Op op = translateInstruction(opcode, frame.operand1[offset], frame.operand2[offset]);
+			if(op == null)
+				break;
+			
+			block.append(op, frame.operand1[offset], frame.operand2[offset],
+					frame.size[offset], (opcode >> 4) != 0x7); //SOI leaves T2 intact
+			offset += frame.size[offset];
+			
+			if(endsBlock(opcode))
+				break;
+		}
+		
+		if(block.length == 0)
+			return null;
+		
+		iCache.addBlock(frameNum, block);
+		return block;
+	}
+	
+	/* isRegister - Returns true if the given operand is a valid register code */
+	private static boolean isRegister(int code){
+		return code >= 0 && code < Processor.MAX_REGISTERS;
+	}
+	
+	/* translateInstruction - Returns the Op for a single instruction, or null
+	 * if it uses an invalid register code, may write a segment register or is
+	 * a system call, and has to be left to the interpreter.
+	 * */
+	private CompiledBlock.Op translateInstruction(byte opcode, final byte t1, final short t2){
+		final short reg[] = cpu.reg;
+		
+		if((opcode >> 4) == 0x1){ //register reference instruction
+			if(!isRegister(t1) || !isRegister(t2) || Processor.isSegmentRegister(t1))
+				return null;
+			
+			switch(opcode){
+				case 0x16: return new CompiledBlock.Op(){ void exec(){ reg[t1] = reg[t2]; } };
+				case 0x17: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.add(reg[t1], reg[t2]); } };
+				case 0x18: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.sub(reg[t1], reg[t2]); } };
+				case 0x19: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.mul(reg[t1], reg[t2]); } };
+				case 0x1A: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.div(reg[t1], reg[t2]); } };
+				case 0x1B: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.and(reg[t1], reg[t2]); } };
+				case 0x1C: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.or(reg[t1], reg[t2]); } };
+				default: return new CompiledBlock.Op(){ void exec(){} };
+			}
+		}
+		
+		switch(opcode){ //instructions that don't use the register operand
+			case 0x37: return new CompiledBlock.Op(){ void exec(){ if(Register.bitIsSet(reg[FL], ZERO) == 0) reg[CC] = t2; } };
+			case 0x38: return new CompiledBlock.Op(){ void exec(){ if(Register.bitIsSet(reg[FL], ZERO) == 1) reg[CC] = t2; } };
+			case 0x39: return new CompiledBlock.Op(){ void exec(){ if(Register.bitIsSet(reg[FL], CARRY) == 1) reg[CC] = t2; } };
+			case 0x3A: return new CompiledBlock.Op(){ void exec(){ if(Register.bitIsSet(reg[FL], SIGN) == 1) reg[CC] = t2; } };
+			case 0x3B: return new CompiledBlock.Op(){ void exec(){ reg[CC] = t2; } };
+			case 0x3C: return new CompiledBlock.Op(){ void exec(){ cpu.programStack.push(reg[CC]); reg[CC] = t2; } };
+			case 0x3D: return null; //ACT, the system call stops the process in the interpreter
+			
+			case 0x52: //stores the operand itself, as execMI() does
+				final byte up = (byte)(t1 >> 8), lw = (byte)(t1 & 0xFF);
+				return new CompiledBlock.Op(){ void exec(){
+					M.write(t2, up); //Write Upper Order 8 Bits
+					M.write((short)(t2+1), lw); //Write Lower Order 8 Bits
+				} };
+		}
+		
+		if(!isRegister(t1) || Processor.isSegmentRegister(t1))
+			return null;
+		
+		switch(opcode){
+			case 0x30: return new CompiledBlock.Op(){ void exec(){ reg[t1] = t2; } };
+			case 0x31: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.add(reg[t1], t2); } };
+			case 0x32: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.sub(reg[t1], t2); } };
+			case 0x33: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.mul(reg[t1], t2); } };
+			case 0x34: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.div(reg[t1], t2); } };
+			case 0x35: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.and(reg[t1], t2); } };
+			case 0x36: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.or(reg[t1], t2); } };
+			
+			case 0x51: return new CompiledBlock.Op(){ void exec(){ reg[t1] = M.read(t2); } };
+			
+			case 0x71: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.shl(reg[t1]); } };
+			case 0x72: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.shr(reg[t1]); } };
+			case 0x73: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.rtl(reg[t1]); } };
+			case 0x74: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.rtr(reg[t1]); } };
+			case 0x75: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.inc(reg[t1]); } };
+			case 0x76: return new CompiledBlock.Op(){ void exec(){ reg[t1] = Register.dec(reg[t1]); } };
+			case 0x77: return new CompiledBlock.Op(){ void exec(){ cpu.programStack.push(reg[t1]); } };
+			case 0x78: return new CompiledBlock.Op(){ void exec(){ cpu.programStack.pop(t1); } };
+			
+			default: return new CompiledBlock.Op(){ void exec(){} }; //unidentified statement
+		}
+	}
+}
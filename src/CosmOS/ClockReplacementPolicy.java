@@ -0,0 +1,41 @@
+package CosmOS;
+import java.util.LinkedList;
+
+/* ClockReplacementPolicy:
+ * Second chance. The frames are kept in a circle in the order their
+ * pages came in, and the hand points at the oldest. A page that was
+ * referenced since the hand last passed has its referenced bit cleared
+ * and is skipped; the first page that was not is evicted.
+ *
+ * The circle is a list with the hand at its head, so skipping a page
+ * moves it to the tail.
+ * */
+
+public class ClockReplacementPolicy implements PageReplacementPolicy {
+	private LinkedList<Integer> clock = new LinkedList<Integer>();
+	
+	public void add(int frameNum, int key){ clock.add(frameNum); } //just behind the hand
+	
+	public void remove(int frameNum){ clock.remove(Integer.valueOf(frameNum)); }
+	
+	public int selectVictim(Pager pager){
+		while(!clock.isEmpty()){ //ends within two turns, every page skipped loses its bit
+			int frameNum = clock.poll();
+			
+			if(!pager.testAndClearReferenced(frameNum))
+				return frameNum;
+			
+			clock.add(frameNum); //second chance
+		}
+		
+		return -1;
+	}
+	
+	public void onFault(Pager pager){ /* not used */ }
+	
+	public int size(){ return clock.size(); }
+	
+	public int[] frames(){ return FIFOReplacementPolicy.toArray(clock); }
+	
+	public String getName(){ return "clock"; }
+}
@@ -0,0 +1,58 @@
+package CosmOS;
+
+/* CompiledBlock:
+ * A basic block of guest code translated by the BlockTranslator.
+ * Every instruction of the block is kept as an Op, an object made
+ * for that one instruction with its register operands already
+ * resolved, together with the operands the Processor loads into
+ * T1 & T2 before running it.
+ *
+ * A block lives inside a single frame. It is invalidated by the
+ * InstructionCache when any byte it was translated from is written.
+ * */
+
+public class CompiledBlock {
+	/* Op - A single translated instruction */
+	static abstract class Op {
+		abstract void exec();
+	}
+	
+	int entryOffset, endOffset; //range of the frame the block was translated from
+	int length;                 //number of instructions
+	boolean valid = true;
+	
+	Op ops[];
+	byte operand1[], size[];
+	short operand2[];
+	boolean loadsT2[];
+	
+	CompiledBlock nextInFrame; //next block compiled from the same frame
+	
+	public CompiledBlock(int entryOffset, int maxLength){
+		this.entryOffset = entryOffset;
+		this.endOffset = entryOffset;
+		
+		ops = new Op[maxLength];
+		operand1 = new byte[maxLength];
+		operand2 = new short[maxLength];
+		size = new byte[maxLength];
+		loadsT2 = new boolean[maxLength];
+	}
+	
+	/* append - Adds a translated instruction to the end of the block */
+	void append(Op op, byte op1, short op2, int instSize, boolean setsT2){
+		ops[length] = op;
+		operand1[length] = op1;
+		operand2[length] = op2;
+		size[length] = (byte)instSize;
+		loadsT2[length] = setsT2;
+		
+		endOffset += instSize;
+		++length;
+	}
+	
+	/* overlaps - Returns true if the byte at the given frame offset belongs to this block */
+	boolean overlaps(int offset){
+		return offset >= entryOffset && offset < endOffset;
+	}
+}
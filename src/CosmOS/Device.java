@@ -0,0 +1,47 @@
+package CosmOS;
+
+/* Device:
+ * An I/O device modelled as a single FIFO server. Every request takes
+ * the latency of the device, and a request that arrives while the
+ * device is busy waits until the requests before it are done. Since the
+ * service time is fixed, the completion time of a request is known when
+ * it is made, and the device only has to remember when it becomes free.
+ * */
+
+public class Device {
+	private int latency;
+	private long busyUntil;
+	
+	/* Statistics */
+	private long requests, busyCycles, queueCycles;
+	
+	public Device(int latency){
+		this.latency = latency;
+	}
+	
+	public void setLatency(int cycles){ latency = cycles; }
+	
+	public int getLatency(){ return latency; }
+	
+	/* request - Queues a request made at the given cycle and returns the cycle it completes at */
+	public long request(long now){
+		long start = Math.max(now, busyUntil);
+		
+		busyUntil = start + latency;
+		
+		++requests;
+		busyCycles += latency;
+		queueCycles += start - now;
+		
+		return busyUntil;
+	}
+	
+	public long getRequests(){ return requests; }
+	
+	public long getBusyCycles(){ return busyCycles; }
+	
+	/* getMeanQueueTime - Cycles a request waited on average before the device started on it */
+	public double getMeanQueueTime(){
+		return requests == 0 ? 0.0 : (double)queueCycles / requests;
+	}
+}
@@ -0,0 +1,123 @@
+package CosmOS;
+
+/* EventQueue:
+ * Future events of the simulation, ordered by the cycle they happen at.
+ * A binary min-heap on the time of the event, ties broken by the order
+ * the events were posted, so events of the same cycle are handled first
+ * come, first served. Posting and taking the next event take O(log n).
+ *
+ * The Scheduler handles the events whose time has come before every
+ * dispatch, and when no process is ready it moves the clock straight to
+ * the time of the next event instead of stepping through the idle time.
+ * */
+
+public class EventQueue {
+	/* Event Types */
+	public static final int	IO_DONE = 0;	//a device finished the request of a process
+	
+	/* Event */
+	public static class Event {
+		public long time;
+		public int type;
+		public PCB pcb;
+		public int arg;
+		long seq;
+	}
+	
+	private Event heap[] = new Event[64];
+	private int size;
+	private long posted;
+	
+	/* post - Adds an event that happens at the given cycle */
+	public void post(long time, int type, PCB p, int arg){
+		Event e = new Event();
+		e.time = time;
+		e.type = type;
+		e.pcb = p;
+		e.arg = arg;
+		e.seq = posted++;
+		
+		if(size == heap.length){
+			Event bigger[] = new Event[heap.length * 2];
+			System.arraycopy(heap, 0, bigger, 0, size);
+			heap = bigger;
+		}
+		
+		//Sift up
+		int i = size++;
+		while(i > 0 && before(e, heap[(i-1)/2])){
+			heap[i] = heap[(i-1)/2];
+			i = (i-1)/2;
+		}
+		heap[i] = e;
+	}
+	
+	/* peekTime - Returns the time of the next event, -1 if there is none */
+	public long peekTime(){
+		return size == 0 ? -1 : heap[0].time;
+	}
+	
+	/* pollDue - Removes and returns the next event if it happens at or before now, null otherwise */
+	public Event pollDue(long now){
+		if(size == 0 || heap[0].time > now)
+			return null;
+		
+		Event first = heap[0];
+		Event last = heap[--size];
+		heap[size] = null;
+		
+		if(size > 0)
+			siftDown(0, last);
+		
+		return first;
+	}
+	
+	/* cancel
+	 * Removes the events of the process, when it is killed, so that the
+	 * clock is never moved to an event nobody waits for. The remaining
+	 * events are compacted and the heap is rebuilt in O(n).
+	 * */
+	public void cancel(PCB p){
+		int kept = 0;
+		
+		for(int i=0; i<size; i++){
+			if(heap[i].pcb != p)
+				heap[kept++] = heap[i];
+		}
+		
+		if(kept == size)
+			return;
+		
+		for(int i=kept; i<size; i++)
+			heap[i] = null;
+		size = kept;
+		
+		for(int i=size/2 - 1; i>=0; i--)
+			siftDown(i, heap[i]);
+	}
+	
+	/* siftDown - Places e at index i or below, moving the earlier children up */
+	private void siftDown(int i, Event e){
+		while(true){
+			int child = 2*i + 1;
+			if(child >= size)
+				break;
+			if(child+1 < size && before(heap[child+1], heap[child]))
+				++child;
+			if(!before(heap[child], e))
+				break;
+			
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = e;
+	}
+	
+	public int size(){ return size; }
+	
+	public boolean isEmpty(){ return size == 0; }
+	
+	private static boolean before(Event a, Event b){
+		return a.time < b.time || (a.time == b.time && a.seq < b.seq);
+	}
+}
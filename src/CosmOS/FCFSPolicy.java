@@ -0,0 +1,37 @@
+package CosmOS;
+import java.util.LinkedList;
+
+/* FCFSPolicy:
+ * First come, first served. Processes run to completion in the order
+ * they arrived; an unblocked process goes to the back of the queue.
+ * */
+
+public class FCFSPolicy implements SchedulingPolicy {
+	private RunQueue readyQ = new RunQueue();
+	
+	public void enqueue(PCB p){ readyQ.add(p, 0); }
+	
+	public PCB pickNext(){ return readyQ.poll(); }
+	
+	public int quantumOf(PCB p){ return 0; }
+	
+	public void onQuantumExpired(PCB p, int executed){ readyQ.add(p, 0); }
+	
+	public void onYield(PCB p, int executed){ readyQ.add(p, 0); }
+	
+	public void onBlock(PCB p){ readyQ.remove(p); }
+	
+	public void onWake(PCB p){ readyQ.add(p, 0); }
+	
+	public boolean remove(PCB p){ return readyQ.remove(p); }
+	
+	public void setTimeSlice(int cycles){ /* not used */ }
+	
+	public boolean isEmpty(){ return readyQ.isEmpty(); }
+	
+	public int size(){ return readyQ.size(); }
+	
+	public LinkedList<PCB> toList(){ return readyQ.toList(); }
+	
+	public String getName(){ return "fcfs"; }
+}
@@ -0,0 +1,36 @@
+package CosmOS;
+import java.util.LinkedList;
+
+/* FIFOReplacementPolicy:
+ * Evicts the page that has been in memory the longest, whether it is
+ * still used or not.
+ * */
+
+public class FIFOReplacementPolicy implements PageReplacementPolicy {
+	private LinkedList<Integer> queue = new LinkedList<Integer>(); //oldest first
+	
+	public void add(int frameNum, int key){ queue.add(frameNum); }
+	
+	public void remove(int frameNum){ queue.remove(Integer.valueOf(frameNum)); }
+	
+	public int selectVictim(Pager pager){
+		return queue.isEmpty() ? -1 : queue.poll();
+	}
+	
+	public void onFault(Pager pager){ /* not used */ }
+	
+	public int size(){ return queue.size(); }
+	
+	public int[] frames(){ return toArray(queue); }
+	
+	public String getName(){ return "fifo"; }
+	
+	static int[] toArray(LinkedList<Integer> list){
+		int a[] = new int[list.size()], i = 0;
+		
+		for(int frameNum : list)
+			a[i++] = frameNum;
+		
+		return a;
+	}
+}
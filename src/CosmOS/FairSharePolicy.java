@@ -0,0 +1,116 @@
+package CosmOS;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.TreeSet;
+
+/* FairSharePolicy:
+ * Gives every process a share of the CPU in proportion to its weight,
+ * in the manner of the Linux CFS. Each process has a virtual runtime,
+ * the instructions it has run scaled by NICE_0_WEIGHT / weight, and the
+ * process with the smallest virtual runtime runs next. A lower priority
+ * number gives a larger weight, so the virtual runtime grows slower.
+ *
+ * The ready processes are kept in a TreeSet (a red-black tree) ordered
+ * by virtual runtime and then by arrival, so picking and requeueing take
+ * O(log n). The quantum is the target latency split between the ready
+ * processes, but never less than MIN_GRANULARITY instructions.
+ *
+ * A process that arrives or wakes up starts at the smallest virtual
+ * runtime in the tree, so it can not claim the CPU for the whole time
+ * it was away.
+ * */
+
+public class FairSharePolicy implements SchedulingPolicy {
+	public static final int	NICE_0_WEIGHT = 1024,
+							DEFAULT_TARGET_LATENCY = 48,
+							MIN_GRANULARITY = 4;
+	
+	/* Indexed by PID */
+	private long vruntime[] = new long[ProcessTable.MAX_PIDS];
+	private int order[] = new int[ProcessTable.MAX_PIDS];
+	private int weight[] = new int[ProcessTable.MAX_PIDS];
+	
+	private int arrivals;
+	private int targetLatency = DEFAULT_TARGET_LATENCY;
+	private long minVruntime;
+	
+	private TreeSet<PCB> readyQ = new TreeSet<PCB>(new Comparator<PCB>(){
+		public int compare(PCB a, PCB b){
+			int x = a.getPID(), y = b.getPID();
+			
+			if(vruntime[x] != vruntime[y])
+				return vruntime[x] < vruntime[y] ? -1 : 1;
+			
+			return order[x] < order[y] ? -1 : (order[x] == order[y] ? 0 : 1);
+		}
+	});
+	
+	/* weightOf - Weight of a priority, halved every 8 priority steps */
+	private static int weightOf(int priority){
+		return Math.max(1, NICE_0_WEIGHT >> Math.min(Math.max(priority, 0) / 8, 10));
+	}
+	
+	public void enqueue(PCB p){
+		int pid = p.getPID();
+		
+		weight[pid] = weightOf(p.getPriority());
+		vruntime[pid] = minVruntime;
+		insert(p);
+	}
+	
+	public PCB pickNext(){
+		PCB p = readyQ.pollFirst();
+		
+		if(p != null)
+			minVruntime = Math.max(minVruntime, vruntime[p.getPID()]);
+		
+		return p;
+	}
+	
+	public int quantumOf(PCB p){
+		return Math.max(MIN_GRANULARITY, targetLatency / (readyQ.size() + 1));
+	}
+	
+	/* onQuantumExpired - Charges the instructions run to the virtual runtime and requeues the process */
+	public void onQuantumExpired(PCB p, int executed){
+		int pid = p.getPID();
+		
+		vruntime[pid] += (long)executed * NICE_0_WEIGHT / weight[pid];
+		insert(p);
+	}
+	
+	public void onYield(PCB p, int executed){ onQuantumExpired(p, executed); }
+	
+	public void onBlock(PCB p){ remove(p); }
+	
+	public void onWake(PCB p){
+		int pid = p.getPID();
+		
+		vruntime[pid] = Math.max(vruntime[pid], minVruntime);
+		insert(p);
+	}
+	
+	public boolean remove(PCB p){
+		return readyQ.remove(p);
+	}
+	
+	public void setTimeSlice(int cycles){ /* not used, see setTargetLatency */ }
+	
+	/* setTargetLatency - Instructions in which every ready process should run once */
+	public void setTargetLatency(int instructions){
+		targetLatency = Math.max(MIN_GRANULARITY, instructions);
+	}
+	
+	public boolean isEmpty(){ return readyQ.isEmpty(); }
+	
+	public int size(){ return readyQ.size(); }
+	
+	public LinkedList<PCB> toList(){ return new LinkedList<PCB>(readyQ); }
+	
+	public String getName(){ return "cfs"; }
+	
+	private void insert(PCB p){
+		order[p.getPID()] = arrivals++;
+		readyQ.add(p);
+	}
+}
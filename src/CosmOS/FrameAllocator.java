@@ -0,0 +1,197 @@
+package CosmOS;
+
+/* FrameAllocator:
+ * Keeps track of the free frames of the physical memory in a bitmap,
+ * one bit per frame, set if the frame is free. A frame is allocated
+ * by finding the lowest set bit of the first non-empty word, so both
+ * allocation and freeing take constant time for a memory of a few
+ * hundred frames.
+ *
+ * A process is given a contiguous run of frames when possible, and
+ * scattered frames otherwise. Frames are freed one at a time or for
+ * a whole page table at once; freeing a frame that is already free
+ * is reported and ignored.
+ * */
+
+public class FrameAllocator {
+	private static final int WORD_BITS = 64;
+	
+	private long bitmap[];
+	private int numFrames, freeCount;
+	
+	/* firstWord - No word below it has a free frame */
+	private int firstWord;
+	
+	public FrameAllocator(int numFrames){
+		this.numFrames = numFrames;
+		bitmap = new long[(numFrames + WORD_BITS - 1) / WORD_BITS];
+		
+		for(int i=0; i<numFrames; i++)
+			bitmap[i / WORD_BITS] |= 1L << (i % WORD_BITS);
+		
+		freeCount = numFrames;
+		firstWord = 0;
+	}
+	
+	/* reserve - Marks the given frames as used, for frames that are never handed out (kernel) */
+	public void reserve(int start, int count){
+		for(int frameNum = start; frameNum < start+count; frameNum++){
+			if(isFree(frameNum)){
+				bitmap[frameNum / WORD_BITS] &= ~(1L << (frameNum % WORD_BITS));
+				--freeCount;
+			}
+		}
+	}
+	
+	public boolean isFree(int frameNum){
+		return (bitmap[frameNum / WORD_BITS] & (1L << (frameNum % WORD_BITS))) != 0;
+	}
+	
+	public int getFreeFrameCount(){ return freeCount; }
+	
+	public int getFrameCount(){ return numFrames; }
+	
+	/* allocate - Returns the lowest free frame, or -1 if memory is full */
+	public int allocate(){
+		while(firstWord < bitmap.length && bitmap[firstWord] == 0)
+			++firstWord;
+		
+		if(firstWord == bitmap.length)
+			return -1;
+		
+		int bit = Long.numberOfTrailingZeros(bitmap[firstWord]);
+		bitmap[firstWord] &= ~(1L << bit);
+		--freeCount;
+		
+		return firstWord*WORD_BITS + bit;
+	}
+	
+	/* allocateRun - Allocates count contiguous frames and returns the first
+	 * one, or -1 if there is no free run that long.
+	 * */
+	public int allocateRun(int count){
+		int start = findRun(count);
+		
+		if(start != -1)
+			reserve(start, count);
+		
+		return start;
+	}
+	
+	/* allocateFrames - Allocates the frames of a whole page table. A contiguous
+	 * run is used if there is one, scattered frames otherwise. Returns null and
+	 * allocates nothing if fewer than count frames are free.
+	 * */
+	public int[] allocateFrames(int count){
+		if(count > freeCount)
+			return null;
+		
+		int frameList[] = new int[count];
+		int start = allocateRun(count);
+		
+		for(int i=0; i<count; i++)
+			frameList[i] = (start != -1) ? start+i : allocate();
+		
+		return frameList;
+	}
+	
+	/* free - Returns the frame to the free pool, false if it was already free */
+	public boolean free(int frameNum){
+		if(frameNum < 0 || frameNum >= numFrames){
+			System.out.println("Frame Allocator: Invalid frame " + frameNum + " can not be freed.");
+			//Generate Trap To OS
+			return false;
+		}
+		
+		if(isFree(frameNum)){
+			System.out.println("Frame Allocator: Double free of frame " + frameNum + ".");
+			//Generate Trap To OS
+			return false;
+		}
+		
+		bitmap[frameNum / WORD_BITS] |= 1L << (frameNum % WORD_BITS);
+		++freeCount;
+		
+		if(frameNum / WORD_BITS < firstWord)
+			firstWord = frameNum / WORD_BITS;
+		
+		return true;
+	}
+	
+	/* freeFrames - Frees all the frames of a page table */
+	public void freeFrames(int frameList[]){
+		for(int i=0; i<frameList.length; i++)
+			free(frameList[i]);
+	}
+	
+	/* findRun - Returns the first frame of the lowest free run of count frames, -1 if none */
+	private int findRun(int count){
+		int runStart = -1, runLength = 0;
+		
+		for(int frameNum = firstWord*WORD_BITS; frameNum < numFrames; frameNum++){
+			if(bitmap[frameNum / WORD_BITS] == 0){ //skip the full word
+				frameNum = (frameNum / WORD_BITS + 1) * WORD_BITS - 1;
+				runLength = 0;
+				continue;
+			}
+			
+			if(isFree(frameNum)){
+				if(runLength == 0)
+					runStart = frameNum;
+				
+				if(++runLength == count)
+					return runStart;
+			} else {
+				runLength = 0;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/* Fragmentation Statistics */
+	
+	/* getLargestFreeRun - Returns the length of the longest run of free frames */
+	public int getLargestFreeRun(){
+		int largest = 0, runLength = 0;
+		
+		for(int frameNum = 0; frameNum < numFrames; frameNum++){
+			if(isFree(frameNum)){
+				if(++runLength > largest)
+					largest = runLength;
+			} else {
+				runLength = 0;
+			}
+		}
+		
+		return largest;
+	}
+	
+	/* getFreeRunCount - Returns the number of separate runs the free frames are split into */
+	public int getFreeRunCount(){
+		int runs = 0;
+		boolean inRun = false;
+		
+		for(int frameNum = 0; frameNum < numFrames; frameNum++){
+			if(isFree(frameNum) && !inRun)
+				++runs;
+			
+			inRun = isFree(frameNum);
+		}
+		
+		return runs;
+	}
+	
+	/* getFragmentation - Returns the share of the free frames outside the largest free run, 0 to 1 */
+	public double getFragmentation(){
+		if(freeCount == 0)
+			return 0.0;
+		
+		return 1.0 - (double)getLargestFreeRun() / freeCount;
+	}
+	
+	public String getStatisticsStr(){
+		return String.format("Free Frames\t: %d of %d\nFree Runs\t: %d\nLargest Run\t: %d\nFragmentation\t: %.2f%%\n",
+				freeCount, numFrames, getFreeRunCount(), getLargestFreeRun(), 100.0*getFragmentation());
+	}
+}
@@ -0,0 +1,187 @@
+package CosmOS;
+import java.util.Arrays;
+
+/* InstructionCache:
+ * Holds pre-decoded instructions for the Processor so that an
+ * instruction is fetched and decoded from memory only once. After
+ * that, the Processor runs it from the decoded record instead of
+ * reading the opcode and its operands through the MMU again.
+ *
+ * Records are indexed by physical address, one slot for every byte
+ * of a frame. A frame gets its record table the first time code is
+ * executed from it. Every write to physical memory is reported by
+ * the Memory class through invalidate(), which drops the records
+ * overlapping the written byte.
+ *
+ * Instructions crossing a frame boundary are never cached since
+ * the next page of the process can be mapped to any frame.
+ *
+ * The decoded frames also keep the blocks compiled from them by the
+ * BlockTranslator and the entry counts used to find hot blocks, so
+ * that a write drops the compiled blocks along with the records.
+ * */
+
+public class InstructionCache {
+	public static final int	FRAME_SIZE = 128,
+							MAX_FRAMES = 512,
+							MAX_INSTRUCTION_SIZE = 4;
+	
+	/* DecodedFrame - Decoded records of a single frame, kept as parallel
+	 * arrays indexed by the offset of the instruction within the frame.
+	 * A size of zero marks a slot that has not been decoded.
+	 * */
+	static class DecodedFrame {
+		byte	opcode[] = new byte[FRAME_SIZE],
+				operand1[] = new byte[FRAME_SIZE],
+				size[] = new byte[FRAME_SIZE];
+		short	operand2[] = new short[FRAME_SIZE],
+				heat[] = new short[FRAME_SIZE]; //entry counts of the blocks starting at each offset
+		boolean live = false;
+		
+		CompiledBlock blocks[]; //compiled blocks by entry offset, allocated with the first block
+		CompiledBlock blockList; //all compiled blocks of the frame
+		
+		/* blockAt - Returns the compiled block entered at the given offset, if any */
+		CompiledBlock blockAt(int offset){
+			return (blocks == null) ? null : blocks[offset];
+		}
+	}
+	
+	private DecodedFrame frames[] = new DecodedFrame[MAX_FRAMES];
+	private Memory M;
+	
+	public InstructionCache(Memory mem){
+		M = mem;
+	}
+	
+	/* instructionSize - returns the size of the instruction for the given
+	 * opcode as computed by Processor.exec(), 0 for an illegal opcode.
+	 * */
+	public static int instructionSize(byte opcode){
+		switch(opcode >> 4){ //same classification as Processor.getInstructionType()
+			case 0x1: return 3;
+			case 0x3:
+			case 0x5: return 4;
+			case 0x7: return 2;
+			default: return 0;
+		}
+	}
+	
+	/* lookup - Returns the decoded frame holding the instruction at the given
+	 * physical address, decoding it first if needed. Returns null if the
+	 * instruction can't be cached and must be run through the interpreter.
+	 * */
+	DecodedFrame lookup(int physAddr){
+		int frameNum = physAddr / FRAME_SIZE,
+			offset = physAddr % FRAME_SIZE;
+		DecodedFrame frame = frames[frameNum];
+		
+		if(frame != null && frame.size[offset] != 0)
+			return frame;
+		
+		return decode(frameNum, offset);
+	}
+	
+	/* decode - Reads the instruction at the given frame and offset straight from
+	 * physical memory into its record. Operands are read exactly the way
+	 * Processor.readOperands() reads them through the MMU.
+	 * */
+	private DecodedFrame decode(int frameNum, int offset){
+		int addr = frameNum * FRAME_SIZE + offset;
+		byte opcode = M.readByteFromPhysical(addr);
+		int size = instructionSize(opcode);
+		
+		if(size == 0 || offset + size > FRAME_SIZE) //illegal or crosses the frame boundary
+			return null;
+		
+		if(frames[frameNum] == null)
+			frames[frameNum] = new DecodedFrame();
+		
+		DecodedFrame frame = frames[frameNum];
+		frame.opcode[offset] = opcode;
+		
+		switch(opcode >> 4){
+			case 0x1:
+				frame.operand1[offset] = M.readByteFromPhysical(addr+1);
+				frame.operand2[offset] = M.readByteFromPhysical(addr+2);
+				break;
+			
+			case 0x3:
+			case 0x5:
+				frame.operand1[offset] = M.readByteFromPhysical(addr+1);
+				frame.operand2[offset] = M.readShortFromPhysical(addr+2);
+				break;
+			
+			case 0x7:
+				frame.operand1[offset] = M.readByteFromPhysical(addr+1);
+				break;
+		}
+		
+		frame.size[offset] = (byte)size;
+		frame.live = true;
+		return frame;
+	}
+	
+	/* invalidate - Drops every record overlapping the byte at the given
+	 * physical address. Called by the Memory class on every write.
+	 * */
+	public void invalidate(int physAddr){
+		DecodedFrame frame = frames[physAddr / FRAME_SIZE];
+		
+		if(frame == null || !frame.live)
+			return;
+		
+		int offset = physAddr % FRAME_SIZE;
+		for(int i = Math.max(0, offset-MAX_INSTRUCTION_SIZE+1); i <= offset; i++)
+			frame.size[i] = 0;
+		
+		//Drop the compiled blocks translated from the written byte
+		CompiledBlock prev = null;
+		for(CompiledBlock block = frame.blockList; block != null; block = block.nextInFrame){
+			if(block.overlaps(offset)){
+				dropBlock(frame, prev, block);
+			} else {
+				prev = block;
+			}
+		}
+	}
+	
+	/* invalidateFrame - Drops all records of the given frame. */
+	public void invalidateFrame(int frameNum){
+		DecodedFrame frame = frames[frameNum];
+		
+		if(frame == null || !frame.live)
+			return;
+		
+		Arrays.fill(frame.size, (byte)0);
+		frame.live = false;
+		
+		for(CompiledBlock block = frame.blockList; block != null; block = block.nextInFrame)
+			dropBlock(frame, null, block);
+	}
+	
+	/* addBlock - Registers a block compiled from the given frame */
+	void addBlock(int frameNum, CompiledBlock block){
+		DecodedFrame frame = frames[frameNum];
+		
+		if(frame.blocks == null)
+			frame.blocks = new CompiledBlock[FRAME_SIZE];
+		
+		frame.blocks[block.entryOffset] = block;
+		block.nextInFrame = frame.blockList;
+		frame.blockList = block;
+	}
+	
+	/* dropBlock - Invalidates a compiled block and unlinks it from its frame,
+	 * prev being the block before it in the list of the frame.
+	 * */
+	private void dropBlock(DecodedFrame frame, CompiledBlock prev, CompiledBlock block){
+		block.valid = false;
+		frame.blocks[block.entryOffset] = null;
+		
+		if(prev == null)
+			frame.blockList = block.nextInFrame;
+		else
+			prev.nextInFrame = block.nextInFrame;
+	}
+}
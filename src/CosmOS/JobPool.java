@@ -0,0 +1,149 @@
+package CosmOS;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/* JobPool:
+ * Programs that were submitted while there were not enough free frames,
+ * kernel frames or PIDs to load them. The LongTermScheduler admits jobs
+ * from the pool whenever the Scheduler frees the memory of a process.
+ *
+ * The admission policy decides the order the jobs are admitted in:
+ *	ADMIT_FIFO		in the order they were submitted
+ *	ADMIT_SMALLEST	fewest frames first, which packs the memory best
+ *	ADMIT_PRIORITY	highest priority (lowest number) first
+ * A job is admitted only when the job before it in that order has been.
+ * Only ADMIT_FIFO keeps a job from waiting forever: with the other two,
+ * newly submitted smaller or higher priority jobs keep going ahead of it.
+ *
+ * The pool is bounded. A submission to a full pool is rejected, which
+ * is the backpressure signal to whoever submits the jobs; isUnderPressure
+ * warns earlier, once the pool is three quarters full.
+ * */
+
+public class JobPool {
+	/* Admission Policies */
+	public static final int	ADMIT_FIFO = 0, ADMIT_SMALLEST = 1, ADMIT_PRIORITY = 2;
+	
+	public static final int DEFAULT_CAPACITY = 64;
+	
+	/* Job - A program waiting to be loaded */
+	public static class Job {
+		public String name;
+		public ProgramImage image;
+		public int framesRequired;
+		public long submitted; //cycle
+		long seq;
+	}
+	
+	private PriorityQueue<Job> jobs;
+	private int capacity, policy;
+	private long submissions;
+	
+	/* Statistics */
+	private long admitted, rejected, totalWait;
+	private int maxDepth;
+	
+	public JobPool(int capacity, int admissionPolicy){
+		this.capacity = capacity;
+		setAdmissionPolicy(admissionPolicy);
+	}
+	
+	/* setAdmissionPolicy - Changes the order the waiting jobs are admitted in */
+	public void setAdmissionPolicy(int admissionPolicy){
+		PriorityQueue<Job> reordered = new PriorityQueue<Job>(Math.max(capacity, 1), comparatorOf(admissionPolicy));
+		
+		if(jobs != null)
+			reordered.addAll(jobs);
+		
+		jobs = reordered;
+		policy = admissionPolicy;
+	}
+	
+	public int getAdmissionPolicy(){ return policy; }
+	
+	private static Comparator<Job> comparatorOf(final int admissionPolicy){
+		return new Comparator<Job>(){
+			public int compare(Job a, Job b){
+				long x = 0, y = 0;
+				
+				if(admissionPolicy == ADMIT_SMALLEST){
+					x = a.framesRequired;
+					y = b.framesRequired;
+				} else if(admissionPolicy == ADMIT_PRIORITY){
+					x = a.image.getPriority();
+					y = b.image.getPriority();
+				}
+				
+				if(x == y){ //FIFO among equals
+					x = a.seq;
+					y = b.seq;
+				}
+				
+				return x < y ? -1 : (x == y ? 0 : 1);
+			}
+		};
+	}
+	
+	/* offer - Adds a job to the pool, false if the pool is full */
+	public boolean offer(String name, ProgramImage image, int framesRequired, long now){
+		if(jobs.size() >= capacity){
+			++rejected;
+			return false;
+		}
+		
+		Job job = new Job();
+		job.name = name;
+		job.image = image;
+		job.framesRequired = framesRequired;
+		job.submitted = now;
+		job.seq = submissions++;
+		
+		jobs.add(job);
+		maxDepth = Math.max(maxDepth, jobs.size());
+		return true;
+	}
+	
+	/* peek - Returns the job to admit next without removing it, null if the pool is empty */
+	public Job peek(){
+		return jobs.peek();
+	}
+	
+	/* admit - Removes the next job, once it has been loaded */
+	public Job admit(long now){
+		Job job = jobs.poll();
+		
+		if(job != null){
+			++admitted;
+			totalWait += now - job.submitted;
+		}
+		
+		return job;
+	}
+	
+	public int getDepth(){ return jobs.size(); }
+	
+	public int getCapacity(){ return capacity; }
+	
+	public boolean isEmpty(){ return jobs.isEmpty(); }
+	
+	public boolean isFull(){ return jobs.size() >= capacity; }
+	
+	/* isUnderPressure - True once the pool is three quarters full */
+	public boolean isUnderPressure(){ return 4*jobs.size() >= 3*capacity; }
+	
+	public int getMaxDepth(){ return maxDepth; }
+	
+	public long getAdmitted(){ return admitted; }
+	
+	public long getRejected(){ return rejected; }
+	
+	/* getMeanWait - Cycles an admitted job waited in the pool on average */
+	public double getMeanWait(){
+		return admitted == 0 ? 0.0 : (double)totalWait / admitted;
+	}
+	
+	public String getStatisticsStr(){
+		return String.format("Pending Jobs\t: %d of %d (max %d)\nAdmitted\t: %d\nRejected\t: %d\nMean Wait\t: %.1f cycles\n",
+				jobs.size(), capacity, maxDepth, admitted, rejected, getMeanWait());
+	}
+}
@@ -1,17 +1,31 @@
 package CosmOS;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /* This class takes the filename of the process to be
  * loaded from the backing store and creates it's PCB.
- * Firstly, the program is read into an intermediate
- * buffer. If there are enough memory frames available,
+ * Firstly, the program is read into a ProgramImage with
+ * its header parsed. If there are enough memory frames available,
  * the program is written into the available frames and
  * the PCB is updates to reflect the changes. After the
  * program is loaded into the memory and it's PCB has been
  * created, PCB is added to the ready queue. 
+ * With demand paging (Memory.pager), no frame is taken at load time;
+ * the pages are brought in by the Pager when they are first used.
+ *
+ * A batch of programs is read and checked on a pool of threads and then
+ * loaded in one go, see loadBatch(). Everything that changes the memory,
+ * the job pool or the Scheduler is synchronized on the LongTermScheduler.
  */
 
 public class LongTermScheduler {
@@ -27,68 +41,264 @@ public class LongTermScheduler {
 								SS_INSTR_ADDR = 0x8000; //2 - use '0xC000' for 3
 	
 	private Scheduler processScheduler;
-	private Vector<Byte> buffer;
+	private ProgramImage image; //the program being loaded
+	
+	/* imageCache - Parsed images of the programs loaded recently */
+	public ProgramImageCache imageCache = new ProgramImageCache(ProgramImageCache.DEFAULT_BUDGET);
+	
+	/* jobPool - Programs waiting for frames, kernel frames or PIDs to be freed */
+	public JobPool jobPool = new JobPool(JobPool.DEFAULT_CAPACITY, JobPool.ADMIT_FIFO);
+	
+	/* Submission Results */
+	public static final int	LOADED = 0, QUEUED = 1, REJECTED = 2;
+	
 	private Memory M;
 	
 	public LongTermScheduler(Memory mem, Scheduler procSch){
 		M = mem;
-		buffer = new Vector<Byte>();
 		processScheduler = procSch;
+		processScheduler.setLongTermScheduler(this); //to admit jobs when memory is freed
 		PCB.setMemoryLink(mem); //call to statc fn;
 	}
 	
 	public void printFileRead(){
-		for(int i=0; i<buffer.size(); i++){
-			System.out.printf("%h ", buffer.elementAt(i));
+		for(int i=0; image != null && i<image.length(); i++){
+			System.out.printf("%h ", image.get(i));
 		}
 	}
 	
+	/* load - Loads the program, or queues it in the job pool until there is room for it.
+	 * Returns false if the program can't be loaded at all or the pool is full.
+	 * */
 	public boolean load(String procFileName){
-		String fileName = procFileName;
-		int b = 0;
+		return submit(procFileName) != REJECTED;
+	}
+	
+	/* submit
+	 * Loads the program if there is room for it and no job is waiting
+	 * before it, or queues it in the job pool otherwise. Returns LOADED,
+	 * QUEUED or REJECTED (the program is invalid or the pool is full).
+	 * */
+	public synchronized int submit(String procFileName){
+		ProgramImage img = imageCache.get(procFileName);
+		
+		if(img == null || !isLoadable(img, STACK_SIZE))
+			return REJECTED;
+		
+		int numFramesRequired = framesToLoad(img, STACK_SIZE);
+		
+		if(jobPool.isEmpty() && hasRoomFor(numFramesRequired)){
+			image = img;
+			return writeProgramToMemory(STACK_SIZE) != null ? LOADED : REJECTED;
+		}
+		
+		if(!jobPool.offer(procFileName, img, numFramesRequired, processScheduler.cpu.cycles())){
+			System.out.println(procFileName + ": The job pool is full. Can't accept any more programs.");
+			//Generate Trap To OS
+			return REJECTED;
+		}
+		
+		return QUEUED;
+	}
+	
+	/* admitJobs - Loads the waiting jobs, in the order of the admission policy, while there is room */
+	public synchronized int admitJobs(){
+		int count = 0;
+		JobPool.Job job;
+		
+		while((job = jobPool.peek()) != null && hasRoomFor(job.framesRequired)){
+			jobPool.admit(processScheduler.cpu.cycles());
+			image = job.image;
+			
+			if(writeProgramToMemory(STACK_SIZE) != null)
+				++count;
+		}
+		
+		return count;
+	}
+	
+	/* loadBatch - Loads all the .proc files of the directory, in the order of their names */
+	public int[] loadBatch(File dir){
+		File files[] = dir.listFiles(new FilenameFilter(){
+			public boolean accept(File d, String name){
+				return name.endsWith(".proc");
+			}
+		});
+		
+		if(files == null){
+			System.out.println(dir + ": Not a directory. Can't load the batch.");
+			//Generate Trap To OS
+			return new int[0];
+		}
+		
+		Arrays.sort(files);
+		
+		List<String> procFileNames = new ArrayList<String>(files.length);
+		for(File f : files)
+			procFileNames.add(f.getPath());
+		
+		return loadBatch(procFileNames);
+	}
+	
+	/* loadBatch
+	 * Loads a list of programs and returns LOADED, QUEUED or REJECTED for
+	 * each of them. The files are read, parsed and checked in parallel,
+	 * then the programs that fit are written to memory under a single
+	 * lock with one frame allocation for all of them; the rest are
+	 * queued in the job pool in list order, as submit() would.
+	 * */
+	public int[] loadBatch(List<String> procFileNames){
+		int n = procFileNames.size();
+		ProgramImage images[] = new ProgramImage[n];
 		
-		buffer.clear(); //destroy old data in buffer
+		if(n == 0)
+			return new int[0];
 		
-		FileInputStream fin = null;
+		int numThreads = Math.min(n, Runtime.getRuntime().availableProcessors());
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		List<Future<ProgramImage>> results = new ArrayList<Future<ProgramImage>>(n);
 		
 		try {
-			fin = new FileInputStream(fileName);
-		} catch(FileNotFoundException fnfe) {
-			System.out.println(fileName + ": File Not Found.");
-			return false;
+			for(final String procFileName : procFileNames){
+				results.add(pool.submit(new Callable<ProgramImage>(){
+					public ProgramImage call(){
+						ProgramImage img = imageCache.get(procFileName);
+						return (img != null && isLoadable(img, STACK_SIZE)) ? img : null;
+					}
+				}));
+			}
+			
+			for(int i=0; i<n; i++){
+				try {
+					images[i] = results.get(i).get();
+				} catch(ExecutionException ee) {
+					System.out.println(procFileNames.get(i) + ": Could not be read. " + ee.getCause());
+					//Generate Trap To OS
+				}
+			}
+		} catch(InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			System.out.println("Batch load interrupted.");
+			//Generate Trap To OS
+			
+			int status[] = new int[n]; //nothing has been loaded yet
+			Arrays.fill(status, REJECTED);
+			return status;
+		} finally {
+			pool.shutdownNow();
 		}
 		
-		try{
-			while( (b = fin.read()) != -1){
-				buffer.add((byte)b);
+		return commitBatch(procFileNames, images);
+	}
+	
+	/* commitBatch - Loads the checked images of a batch, null entries are rejected */
+	private synchronized int[] commitBatch(List<String> procFileNames, ProgramImage images[]){
+		int n = images.length;
+		int status[] = new int[n], frames[] = new int[n];
+		
+		int freeFrames = M.frames.getFreeFrameCount(),
+			freeKernelFrames = Scheduler.freeKernelFrames.size(),
+			freePIDs = ProcessTable.MAX_PIDS - processScheduler.processTable.size(),
+			totalFrames = 0;
+		
+		/* Decide which programs are loaded now; once one has to wait, the ones after it wait too */
+		for(int i=0; i<n; i++){
+			if(images[i] == null){
+				status[i] = REJECTED;
+				continue;
+			}
+			
+			frames[i] = framesToLoad(images[i], STACK_SIZE);
+			
+			if(jobPool.isEmpty() && frames[i] <= freeFrames && freeKernelFrames > 0 && freePIDs > 0){
+				status[i] = LOADED;
+				freeFrames -= frames[i];
+				--freeKernelFrames;
+				--freePIDs;
+				totalFrames += frames[i];
+			} else if(jobPool.offer(procFileNames.get(i), images[i], frames[i], processScheduler.cpu.cycles())){
+				status[i] = QUEUED;
+			} else {
+				System.out.println(procFileNames.get(i) + ": The job pool is full. Can't accept any more programs.");
+				//Generate Trap To OS
+				status[i] = REJECTED;
 			}
-		} catch(IOException ioe) {
-			System.out.println("IOException caught @ Dispatcher load function.");
+		}
+		
+		int frameList[] = M.pager != null ? null : M.frames.allocateFrames(totalFrames); //one allocation for the whole batch
+		int next = 0;
+		
+		for(int i=0; i<n; i++){
+			if(status[i] != LOADED)
+				continue;
+			
+			image = images[i];
+			mapProgram(createPCB(), frameList, next, framesRequired(images[i], STACK_SIZE));
+			next += frames[i];
+		}
+		
+		return status;
+	}
+	
+	private static int framesRequired(ProgramImage img, int stackSize){
+		return (img.length() + stackSize + PAGE_SIZE - 1) / PAGE_SIZE;
+	}
+	
+	/* framesToLoad - Frames taken when the program is loaded, none with demand paging */
+	private int framesToLoad(ProgramImage img, int stackSize){
+		return M.pager != null ? 0 : framesRequired(img, stackSize);
+	}
+	
+	/* hasRoomFor - True if the frames, a kernel frame and a PID are free for a new process */
+	private boolean hasRoomFor(int numFramesRequired){
+		return M.frames.getFreeFrameCount() >= numFramesRequired &&
+				!Scheduler.freeKernelFrames.isEmpty() &&
+				processScheduler.processTable.size() < ProcessTable.MAX_PIDS;
+	}
+	
+	/* isLoadable - False if the program could never be loaded, whatever memory is freed */
+	private boolean isLoadable(ProgramImage img, int stackSize){
+		if(img.getPriority() < 0 || img.getPriority() > 31){
+			System.out.println("Error: Invalid Priority; Can not load process into memory.");
+			//Generate Trap To OS
+			return false;
+		}
+		
+		if(framesRequired(img, stackSize) > PCB.MAX_ENTRIES){
+			System.out.println("Warning: The program requires more than 27 frames. Ternimating process load request.");
+			//Generate Trap To OS
 			return false;
 		}
 		
-		this.writeProgramToMemory(procFileName);
 		return true;
 	}
 	
+	/* createPCB - Creates the PCB of the program being loaded, null if no kernel frame or PID is free */
 	private PCB createPCB(){
 		PCB p;
 		
 		if(processScheduler.freeKernelFrames.size() == 0){
 			System.out.println("The System is already at it's peak degree of multi programming. Can't create any more PCBs.");
 			//Generate Trap To OS
-			return new PCB(-1);
+			return null;
 		} else {
-			int tmp_pid = buffer.elementAt(1);
+			int tmp_pid = processScheduler.processTable.allocatePID(image.getPIDHint());
+			
+			if(tmp_pid == -1){
+				System.out.println("All PIDs are in use. Can't create any more PCBs.");
+				//Generate Trap To OS
+				return null;
+			}
+			
 			p = new PCB(processScheduler.freeKernelFrames.poll());
+			p.setPageTableSize((short)0); //the kernel frame may hold the page table of an older PCB
 			
-			p.setPriority(buffer.elementAt(0));
+			p.setPriority(image.getPriority());
 			
 			//Assign Unique PID
-			while(processScheduler.getPCB(tmp_pid) != null) ++tmp_pid;
-			p.setPID((byte)tmp_pid);
+			p.setPID(tmp_pid);
 			
-			p.setProcessSize((short)buffer.size());
+			p.setProcessSize((short)image.length());
 			
 			
 			return p;
@@ -96,113 +306,103 @@ public class LongTermScheduler {
 	}
 	
 	public void initRegisters(PCB currPCB){
-		int tmp = 0;
-		
-		//Computing Size of DS
-		tmp = buffer.elementAt(3);
-		tmp = tmp << 8;
-		tmp = tmp | buffer.elementAt(4);
+		//Data Segment
+		currPCB.setRegister(DB, (short)ProgramImage.HEADER_SIZE); //2 header bytes + 3 info bytes
+		currPCB.setRegister(DL, (short)image.getDataSize());
 		
-		currPCB.setRegister(DB, (short)(5)); //2 header bytes + 3 info bytes
-		currPCB.setRegister(DL, (short)tmp);
-
-		//Computing Base of Code Segment
-		tmp += 5;
-		currPCB.setRegister(CB, (short)( tmp+3 )); //+3 info offset
+		//Code Segment
+		currPCB.setRegister(CB, (short)image.getCodeBase()); //+3 info offset
 		currPCB.setRegister(CC, (short)( CS_INSTR_ADDR )); //first instruction of code is at segment 1 offset 0 ie. 0x4000
-		
-		//Computing Size of CS
-		tmp = (buffer.elementAt(tmp+1) << 8) | buffer.elementAt(tmp+2);
-		currPCB.setRegister(CL, (short)tmp);
+		currPCB.setRegister(CL, (short)image.getCodeSize());
 		
 		//Computing Base of Stack Segment
-		tmp = buffer.size(); //Because stack is at the very end of the process
-		currPCB.setRegister(SB, (short)(tmp));
+		currPCB.setRegister(SB, (short)image.length()); //Because stack is at the very end of the process
 		currPCB.setRegister(SC, (short)(SS_INSTR_ADDR));
 		currPCB.setRegister(SL, (short) STACK_SIZE);
 	}
 	
-	private void writeProgramToMemory(String fileName){
-		int numFramesRequired = 0;
-		int bufferIndex = 0; //holds the index of buffer that holds the process to be written
-		int frameBaseAddr = 0; //holds the base address of a memory frame
-		int frameNum = 0; //holds the frame number to be written to the page table
+	/* writeProgramToMemory - Loads the program image, followed by stackSize bytes
+	 * of stack, and returns its PCB, or null if it could not be loaded.
+	 * */
+	private PCB writeProgramToMemory(int stackSize){
+		int numFramesRequired = framesRequired(image, stackSize);
 		
-		if(fileName != "clone_process")
-			numFramesRequired = (int) Math.ceil(( (double) (buffer.size()+STACK_SIZE) / PAGE_SIZE )); //StackSize = 256
-		else
-			numFramesRequired = (int) Math.ceil(( (double) (buffer.size()) / PAGE_SIZE )); //StackSize = 256
+		/* Check everything before taking any resource, so nothing leaks on failure */
+		if(!isLoadable(image, stackSize))
+			return null;
 		
-		Vector<Integer> pTable = new Vector<Integer>(numFramesRequired);
-		PCB currPCB = createPCB();
-		
-		if(M.freeFrames.size() < numFramesRequired){
+		if(M.frames.getFreeFrameCount() < framesToLoad(image, stackSize)){
 			System.out.println("Error: Process could not be loaded because there are not enough free frames available.");
 			//Generate Trap To OS
-			return;
+			return null;
 		}
 		
-		if(buffer.elementAt(0) < 0 || buffer.elementAt(0) > 31){
-			System.out.println("Error: Invalid Priority; Can not load process into memory.");
-			//Generate Trap To OS
-			return;
-		}
+		PCB currPCB = createPCB();
+		if(currPCB == null)
+			return null;
 		
-		for(int pageNum=0; pageNum<numFramesRequired; pageNum++){
-			frameNum = M.freeFrames.elementAt(0);
-			frameBaseAddr = frameNum * PAGE_SIZE; //frame number times frame size = frameBaseAddr
-			M.freeFrames.remove(0); //remove frame from available frames list
-			pTable.add(pageNum, frameNum); //add frame number to page table
-			
-			/*
-			for(int addr = frameBaseAddr;
-				(addr < frameBaseAddr+STACK_SIZE) && (bufferIndex < buffer.size()); addr++){ //write program to frame
-				M.writeByteToPhysical(addr, buffer.elementAt(bufferIndex));
-				++bufferIndex;
+		int frameList[] = M.pager != null ? null : M.frames.allocateFrames(numFramesRequired); //remove frames from available frames list
+		return mapProgram(currPCB, frameList, 0, numFramesRequired);
+	}
+	
+	/* mapProgram - Copies the numPages pages of the program being loaded into the frames
+	 * of frameList, starting at first, and adds its PCB to the Scheduler. If frameList
+	 * is null, no page is present and the Pager brings them in on demand.
+	 * */
+	private PCB mapProgram(PCB currPCB, int frameList[], int first, int numPages){
+		int frameNum = 0; //holds the frame number to be written to the page table
+		
+		Vector<Integer> pTable = new Vector<Integer>(numPages);
+		ByteBuffer program = image.contents();
+		
+		for(int pageNum=0; pageNum<numPages; pageNum++){
+			if(frameList == null){ //not present, never swapped out
+				pTable.add(pageNum, 0);
+				continue;
 			}
-			*/
 			
-			for(int addr = frameBaseAddr;
-				(addr < frameBaseAddr+PAGE_SIZE) && (bufferIndex < buffer.size()); addr++){ //write program to frame
-				M.writeByteToPhysical(addr, buffer.elementAt(bufferIndex));
-				++bufferIndex;
-			}
+			frameNum = frameList[first + pageNum];
+			pTable.add(pageNum, frameNum | PCB.PTE_PRESENT); //add frame number to page table
+			
+			//block copy of the next page of the program, the frames of the stack are left as they are
+			M.writeFrame(frameNum, program);
 		}
 		
 		//Set Appropriate Registers
 		initRegisters(currPCB);
 		
-		//Attach Page Table To PCB
-		if(currPCB.attachPageTable(pTable) == false){
-			System.out.println("Warning: The program requires more than 27 frames. Ternimating process load request.");
-			//Generate Trap To OS
-		}
+		//Attach Page Table To PCB, it fits since isLoadable() checked its size
+		currPCB.attachPageTable(pTable);
+		
+		if(frameList == null)
+			M.pager.attach(currPCB, image);
 		
 		//Add Process To Ready Queue in processSceduler
-		processScheduler.pushIntoQueue(currPCB, buffer.elementAt(0));
+		processScheduler.pushIntoQueue(currPCB, image.getPriority());
+		return currPCB;
 	}
 	
 	//For cloning support
-	public void cloneProcess(PCB tmpPcbPtr){
-		int tmp_pid = tmpPcbPtr.getPID();
-		buffer.clear(); //clear old data
+	public synchronized void cloneProcess(PCB tmpPcbPtr){
+		byte copy[] = new byte[tmpPcbPtr.getPageTableSize() * M.FRAME_SIZE];
 		
-		for(int i=0; i<tmpPcbPtr.getPageTableSize(); i++){ //iterate over frames
-			int base = tmpPcbPtr.getPageTableEntry(i) * M.FRAME_SIZE;
-			
-			for(int addr=base; addr<(base+M.FRAME_SIZE); addr++){//iterate over offset
-				buffer.add(M.readByteFromPhysical(addr));
-			}
+		for(int i=0; i<tmpPcbPtr.getPageTableSize(); i++){ //iterate over pages, from memory or swap
+			M.readPage(tmpPcbPtr, i, copy, i * M.FRAME_SIZE);
 		}
 		
-		//Calculate PID and return - PID can't be negative - add fix for negative numbers
-		while(processScheduler.getPCB(tmp_pid) != null) ++tmp_pid;
+		image = ProgramImage.wrap(copy);
+		if(image == null)
+			return;
 		
-		//Write Program to Ram - same pid should be assign from function below
-		writeProgramToMemory("clone_process");
+		//Write Program to Ram - the clone gets a new PID from the process table, its stack is in the copy
+		PCB clonePCB = writeProgramToMemory(0);
+		if(clonePCB == null)
+			return;
 		
 		//Copy Register State into Clone
-		processScheduler.getPCB(tmp_pid).updateResigsterState(tmpPcbPtr.getRegisterState());
-		processScheduler.getPCB(tmp_pid).setProcessSize(tmpPcbPtr.getProcessSize());
+		short regState[] = new short[PCB.MAX_REGISTERS];
+		tmpPcbPtr.loadRegisterState(regState);
+		clonePCB.updateResigsterState(regState);
+		clonePCB.setProcessSize(tmpPcbPtr.getProcessSize());
 	}
 }
@@ -1,25 +1,33 @@
 package CosmOS;
-import java.util.Vector;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class Memory {
 	public final int MEM_SIZE = 65536;
 	public final int FRAME_SIZE = 128;
 	
 	private byte register[] = new byte[MEM_SIZE];
+	
+	/* view - Big-endian view of the memory used to read and write shorts */
+	private ByteBuffer view = ByteBuffer.wrap(register);
 	private MemoryManagementUnit memManager;
+	private InstructionCache codeCache;
 	
 	public byte buffer;
 	
-	public Vector<Integer> freeFrames;
+	public static final int KERNEL_FRAMES = 32;
+	
+	/* frames - Hands out the free frames of the user space */
+	public FrameAllocator frames;
+	
+	/* pager - Brings the pages of the processes in on demand, null if every page is loaded up front */
+	public Pager pager;
 	
 	public Memory(){
-		freeFrames = new Vector<Integer>(); //Initialize freeFrames Table
+		frames = new FrameAllocator(MEM_SIZE/FRAME_SIZE); //Initialize Free Frames Table
 		
 		//Reserving 32 frames for kernel
-		
-		for(int i=32; i<MEM_SIZE/FRAME_SIZE; i++){ //Generate Free Frames Tables
-			freeFrames.add(i);
-		}
+		frames.reserve(0, KERNEL_FRAMES);
 		
 		//printAvailableFrames();
 	}
@@ -28,49 +36,83 @@ public class Memory {
 		memManager = mmu;
 	}
 	
+	/* setPager - Turns demand paging on, before any process is loaded */
+	public void setPager(Pager p){
+		pager = p;
+		
+		if(memManager != null)
+			memManager.setPager(p);
+	}
+	
+	/* setInstructionCache - Links the decoded instruction cache of the Processor
+	 * so that its records are invalidated whenever memory is written to.
+	 * */
+	public void setInstructionCache(InstructionCache cache){
+		codeCache = cache;
+	}
+	
+	/* physicalAddressOf - Translates the given logical address through the MMU */
+	public int physicalAddressOf(short addr){
+		return memManager.resolveLogicalAddress(addr);
+	}
+	
+	/* Accesses to a page that could not be brought in (physical address -1)
+	 * are dropped: reads return 0 and writes are ignored. The MMU has
+	 * already raised a memory fault, so the process does not go on.
+	 * */
 	public byte read(short addr){
-		addr = memManager.resolveLogicalAddress(addr);
-		return register[addr];
+		int physAddr = memManager.resolveLogicalAddress(addr);
+		return (physAddr < 0) ? 0 : register[physAddr];
 	}
 	
+	/* readAddr - Reads the short at the given logical address. A short on the
+	 * last byte of a page is read one byte at a time, since the next page
+	 * need not be in the next frame (or resident) with demand paging.
+	 * */
 	public short readAddr(short addr){
-		addr = memManager.resolveLogicalAddress(addr);
-		int tmp = 0; //holds intermediate results
+		int physAddr = memManager.resolveLogicalAddress(addr);
+		
+		if(physAddr < 0)
+			return 0;
 		
-		tmp = register[addr];
-		tmp = tmp << 8;
-		tmp = tmp | register[addr+1];
+		if(physAddr % FRAME_SIZE == FRAME_SIZE-1){
+			int high = register[physAddr]; //before the next page can fault and evict this one
+			return (short)(high << 8 | read((short)(addr+1)) & 0xFF);
+		}
 		
-		return (short)tmp;
+		return view.getShort(physAddr);
 	}
 	
 	public void write(short addr){
-		addr = memManager.resolveLogicalAddress(addr);
-		register[addr] = buffer;
+		write(addr, buffer);
 	}
 	
 	public void write(short addr, byte value){
-		addr = memManager.resolveLogicalAddress(addr);
-		register[addr] = value;
+		int physAddr = memManager.resolveLogicalAddress(addr, true);
+		
+		if(physAddr < 0)
+			return;
+		
+		register[physAddr] = value;
+		invalidateCode(physAddr);
 	}
 	
 	/* Allows data to be written using physical address bypassing the MMU */
 	public void writeByteToPhysical(int addr, byte value){
 		register[addr] = value;
+		invalidateCode(addr);
 	}
 	
 	public void writeToPhysical(int addr, short value){
-		//System.out.printf("wtp: value %d, addr %d\n", value, addr);
-		byte	upper = (byte) (value >> 8),
-				lower = (byte) (value & 0x00FF);
-		
-		//writeToPhysical(addr, upper);
-		//writeToPhysical(addr+1, lower);
-		
-		register[addr] = upper;
-		register[addr+1] = lower;
-		
-		//System.out.println("-wtp: " + upper + ", " + lower);
+		view.putShort(addr, value);
+		invalidateCode(addr);
+		invalidateCode(addr+1);
+	}
+	
+	/* invalidateCode - Drops the decoded instructions overlapping the written byte */
+	private void invalidateCode(int addr){
+		if(codeCache != null)
+			codeCache.invalidate(addr);
 	}
 	
 	public byte readByteFromPhysical(int addr){
@@ -78,27 +120,90 @@ public class Memory {
 	}
 	
 	public short readShortFromPhysical(int addr){
-		short value;
-		value = (short) register[addr];
-		value = (short) (value << 8);
-		value = (short) (value | register[addr+1]);
+		return view.getShort(addr);
+	}
+	
+	/* Block Transfer Operations:
+	 * Move whole frames or ranges of physical memory at once, bypassing the MMU.
+	 * Writes drop the decoded instructions of every frame they touch.
+	 * */
+	
+	/* readRange - Copies length bytes starting at the physical address addr into dst */
+	public void readRange(int addr, byte dst[], int dstOffset, int length){
+		System.arraycopy(register, addr, dst, dstOffset, length);
+	}
+	
+	/* writeRange - Copies length bytes of src to memory starting at the physical address addr */
+	public void writeRange(int addr, byte src[], int srcOffset, int length){
+		System.arraycopy(src, srcOffset, register, addr, length);
+		invalidateCodeRange(addr, length);
+	}
+	
+	/* readFrame - Copies a whole frame into dst starting at dstOffset */
+	public void readFrame(int frameNum, byte dst[], int dstOffset){
+		readRange(frameNum*FRAME_SIZE, dst, dstOffset, FRAME_SIZE);
+	}
+	
+	/* writeFrame - Writes the first length bytes of a frame, the rest of the frame is left intact */
+	public void writeFrame(int frameNum, byte src[], int srcOffset, int length){
+		writeRange(frameNum*FRAME_SIZE, src, srcOffset, length);
+	}
+	
+	/* readPage - Copies a page of the process into dst, whether it is in memory or not */
+	public void readPage(PCB p, int pageNum, byte dst[], int dstOffset){
+		if(pager != null){
+			pager.readPage(p, pageNum, dst, dstOffset);
+		} else if(p.getPageFrame(pageNum) != -1){
+			readFrame(p.getPageFrame(pageNum), dst, dstOffset);
+		}
+	}
+	
+	/* readFrame - Puts a whole frame into the ByteBuffer dst at its current position */
+	public void readFrame(int frameNum, ByteBuffer dst){
+		dst.put(register, frameNum*FRAME_SIZE, FRAME_SIZE);
+	}
+	
+	/* writeFrame - Writes the remaining bytes of src, at most a frame, to the start of the frame */
+	public void writeFrame(int frameNum, ByteBuffer src){
+		int length = Math.min(src.remaining(), FRAME_SIZE);
+		
+		src.get(register, frameNum*FRAME_SIZE, length);
+		invalidateCodeRange(frameNum*FRAME_SIZE, length);
+	}
+	
+	public void copyFrame(int srcFrame, int dstFrame){
+		System.arraycopy(register, srcFrame*FRAME_SIZE, register, dstFrame*FRAME_SIZE, FRAME_SIZE);
+		invalidateCodeRange(dstFrame*FRAME_SIZE, FRAME_SIZE);
+	}
+	
+	public void fillFrame(int frameNum, byte value){
+		Arrays.fill(register, frameNum*FRAME_SIZE, (frameNum+1)*FRAME_SIZE, value);
+		invalidateCodeRange(frameNum*FRAME_SIZE, FRAME_SIZE);
+	}
+	
+	/* invalidateCodeRange - Drops the decoded instructions of all the frames in the range */
+	private void invalidateCodeRange(int addr, int length){
+		if(codeCache == null || length <= 0)
+			return;
 		
-		return value;
+		for(int frameNum = addr/FRAME_SIZE; frameNum <= (addr+length-1)/FRAME_SIZE; frameNum++)
+			codeCache.invalidateFrame(frameNum);
 	}
 	
 	/* freeFrame - Add the givens frame to the free frame list making it available for reuse */
 	public void freeFrame(int frameNum){
-		//check if frame is not in ready queue
-		freeFrames.add(frameNum);
+		frames.free(frameNum);
 	}
 	
 	public String getAvailableFrameInfoStr(){
-		String frameListStr = new String(">> Free Frames:\nFrame #\tPhysical Address\n");
+		StringBuilder frameListStr = new StringBuilder(">> Free Frames:\nFrame #\tPhysical Address\n");
 		
-		for(int i=0; i<freeFrames.size(); i++){ //Generate Free Frames Tables
-			frameListStr += String.format("%h\t%h\n", freeFrames.elementAt(i), freeFrames.elementAt(i)*FRAME_SIZE);
+		for(int i=0; i<frames.getFrameCount(); i++){ //Generate Free Frames Tables
+			if(frames.isFree(i))
+				frameListStr.append(String.format("%h\t%h\n", i, i*FRAME_SIZE));
 		}
 		
-		return frameListStr;
+		frameListStr.append(frames.getStatisticsStr());
+		return frameListStr.toString();
 	}
 }
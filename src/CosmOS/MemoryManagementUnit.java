@@ -6,8 +6,43 @@ import java.util.Vector;
  * between the CPU and the Memory. Provides
  * support to the Memory class for address
  * translation.
+ * 
+ * The frames of recently used pages are kept
+ * in a direct-mapped TLB, so that the page table
+ * inside the PCB is only read on a miss. The TLB
+ * is tagged with the PCB it was filled for and is
+ * flushed when the Processor switches to another
+ * process.
+ * 
+ * Optionally, a flat translation table can be used
+ * instead. It maps every 128 byte chunk of the data,
+ * code and stack segments of the running process
+ * straight to physical memory, so that a translation
+ * is a single array index and an add. The table is
+ * rebuilt when the process, its page table or one of
+ * its segment registers changes. Addresses it can't
+ * translate (segmentation faults, invalid pages and
+ * segment 3) still go through segmentationUnit and
+ * pagingUnit.
+ * 
+ * A page that is not present raises a page fault in
+ * pagingUnit. If a Pager is attached it brings the
+ * page in and the access goes on; the page table has
+ * changed, so the TLB is flushed and the flat table
+ * is rebuilt on the next access.
+ * 
+ * With a Pager, the referenced and dirty bits of the
+ * page table entries are kept up to date. Each TLB
+ * entry remembers which bits are already set, so the
+ * entry is only written the first time. The faulting
+ * access itself does not count as a reference, so a
+ * page is referenced only if it is used again after
+ * it was brought in. The flat table only maps pages
+ * already referenced, and for writes only dirty ones;
+ * other accesses go through pagingUnit, and setting a
+ * bit there rebuilds the flat table.
  */
-	
+
 public class MemoryManagementUnit {
 	private static final int	FRAME_SIZE = 128,
 								INFO_SEGMENT = 0,
@@ -19,17 +54,148 @@ public class MemoryManagementUnit {
 								SB=0x14, SL=0x15, SC=0x16,
 								DB=0x17, DL=0x18;
 	
+	public static final int		TLB_SIZE = 32; //must be a power of two
+	
 	private Processor cpu;
 	
+	/* pager - Handles the page faults, null if every page is loaded up front */
+	private Pager pager;
+	
+	/* Translation Lookaside Buffer:
+	 * tlbPage holds the linear page number cached in each entry (-1 if empty)
+	 * and tlbFrame the frame it maps to. tlbOwner is the PCB the entries belong to.
+	 * */
+	private int tlbPage[] = new int[TLB_SIZE], tlbFrame[] = new int[TLB_SIZE];
+	private int tlbBits[] = new int[TLB_SIZE]; //referenced and dirty bits already set in the page table
+	private PCB tlbOwner;
+	private int tlbVersion; //page table version of tlbOwner when it was last flushed
+	
+	/* TLB Statistics */
+	private long tlbHits, tlbMisses, tlbFlushes;
+	
+	/* Flat Translation Table:
+	 * Indexed by the logical address >> 7, ie. segment number and chunk number.
+	 * flatSplit is the chunk offset at which the chunk crosses into the next
+	 * frame; below it, flatLow + offset is the physical address, flatHigh + offset
+	 * otherwise. Only the first flatCount offsets of a chunk are translated.
+	 * */
+	public static final int		FLAT_ENTRIES = 512;
+	
+	private boolean flatMode = false;
+	private int flatLow[] = new int[FLAT_ENTRIES], flatHigh[] = new int[FLAT_ENTRIES],
+				flatSplit[] = new int[FLAT_ENTRIES], flatCount[] = new int[FLAT_ENTRIES];
+	private boolean flatWritable[] = new boolean[FLAT_ENTRIES];
+	private PCB flatOwner;
+	private int flatSegmentVersion, flatPageTableVersion;
+	private long flatRebuilds;
+	
 	public MemoryManagementUnit(Processor p){
 		cpu = p;
+		flushTLB();
+		tlbFlushes = 0;
+	}
+	
+	/* resolveLogicalAddress - Returns the physical address of the given logical address, for a read */
+	public int resolveLogicalAddress(short addr){
+		return resolveLogicalAddress(addr, false);
+	}
+	
+	/* resolveLogicalAddress - Returns the physical address of the given logical address,
+	 * or -1 if its page could not be brought in.
+	 * */
+	public int resolveLogicalAddress(short addr, boolean write){
+		if(flatMode && !cpu.trace.isEnabled(Trace.MMU_PAGE_ACCESS)){
+			int entry = (addr >> 7) & 0x01FF, offset = addr & 0x007F;
+			
+			if(flatOwner != cpu.currentProcess || flatSegmentVersion != cpu.segmentVersion ||
+				(flatOwner != null && flatPageTableVersion != flatOwner.getPageTableVersion()))
+				buildFlatTable();
+			
+			if(offset < flatCount[entry] && (!write || flatWritable[entry]))
+				return offset < flatSplit[entry] ? flatLow[entry] + offset : flatHigh[entry] + offset;
+		}
+		
+		short linear = segmentationUnit(addr);
+		
+		return pagingUnit(linear, write);
+	}
+	
+	/* setFlatTranslation - Turns the use of the flat translation table on or off */
+	public void setFlatTranslation(boolean flag){
+		flatMode = flag;
+		flatOwner = null;
+		flatSegmentVersion = cpu.segmentVersion - 1; //force a rebuild
+	}
+	
+	public boolean isFlatTranslationEnabled(){ return flatMode; }
+	
+	public void setPager(Pager p){
+		pager = p;
+	}
+	
+	/* buildFlatTable - Fills the flat translation table for the running process */
+	private void buildFlatTable(){
+		PCB proc = cpu.currentProcess;
+		
+		for(int i=0; i<FLAT_ENTRIES; i++)
+			flatCount[i] = 0;
+		
+		flatOwner = proc;
+		flatSegmentVersion = cpu.segmentVersion;
+		++flatRebuilds;
+		
+		if(proc == null)
+			return;
+		
+		flatPageTableVersion = proc.getPageTableVersion();
+		int tableSize = proc.getPageTableSize();
+		
+		buildFlatSegment(proc, tableSize, 0, DB, DL);
+		buildFlatSegment(proc, tableSize, 1, CB, CL);
+		buildFlatSegment(proc, tableSize, 2, SB, SL);
+	}
+	
+	private void buildFlatSegment(PCB proc, int tableSize, int segmentNum, int registerBaseCode, int registerLimitCode){
+		int base = cpu.reg[registerBaseCode], limit = cpu.reg[registerLimitCode];
+		
+		for(int chunk=0; chunk<FLAT_ENTRIES/4 && chunk*FRAME_SIZE <= limit; chunk++){
+			int entry = segmentNum*(FLAT_ENTRIES/4) + chunk;
+			int linear = (base + chunk*FRAME_SIZE) & 0xFFFF;
+			int pageNum = linear >> 7, split = FRAME_SIZE - (linear & 0x007F);
+			int lowFrame = frameOf(proc, tableSize, pageNum),
+				highFrame = frameOf(proc, tableSize, (pageNum+1) & 0x01FF);
+			
+			if(lowFrame == -1) //left to the paging unit
+				continue;
+			
+			flatCount[entry] = Math.min(FRAME_SIZE, limit - chunk*FRAME_SIZE + 1);
+			if(highFrame == -1)
+				flatCount[entry] = Math.min(flatCount[entry], split);
+			
+			flatWritable[entry] = isDirty(proc, pageNum) && (flatCount[entry] <= split || isDirty(proc, (pageNum+1) & 0x01FF));
+			
+			flatSplit[entry] = split;
+			flatLow[entry] = lowFrame*FRAME_SIZE + (linear & 0x007F);
+			flatHigh[entry] = highFrame*FRAME_SIZE - split;
+		}
 	}
 	
-	public short resolveLogicalAddress(short addr){
-		addr = segmentationUnit(addr);
-		addr = pagingUnit(addr);
+	/* frameOf - Returns the frame of the given page, or -1 if the page is invalid, not present
+	 * or, with a Pager, not yet referenced.
+	 * */
+	private int frameOf(PCB proc, int tableSize, int pageNum){
+		if(pageNum >= tableSize)
+			return -1;
 		
-		return addr;
+		if(pager != null && (proc.getPageTableEntry(pageNum) & PCB.PTE_REFERENCED) == 0)
+			return -1;
+		
+		return proc.getPageFrame(pageNum);
+	}
+	
+	/* isDirty - True if writes to the page need not go through the paging unit */
+	private boolean isDirty(PCB proc, int pageNum){
+		return pager == null || (proc.getPageTableEntry(pageNum) & PCB.PTE_DIRTY) != 0;
 	}
 	
 	/* segmentationUnit */
@@ -45,48 +211,122 @@ public class MemoryManagementUnit {
 			case 3:
 				//generate trap to OS
 				break;
-				
+			
 			case 0: //Data Segment
 				registerBaseCode = DB;
 				registerLimitCode = DL;
 				break;
-				
+			
 			case 1: //Code Segment
 				registerBaseCode = CB;
 				registerLimitCode = CL;
 				break;
-				
+			
 			case 2: //Stack Segment
 				registerBaseCode = SB;
 				registerLimitCode = SL;
 				break;
-				
+			
 			default:
 				//Generate Trap to OS
 		}
 		
 		if(offset > cpu.getRegisterValue(registerLimitCode)){
-			cpu.setDebugInfoString(String.format("Segmentation Fault @ Segment: %d, Offset: %d, RegBase: %d, RegLimit: %d, Addr: %h\n", segmentNum, offset, cpu.getRegisterValue(registerBaseCode), cpu.getRegisterValue(registerLimitCode), addr));
+			cpu.trace.record(Trace.MMU_SEGMENTATION_FAULT, segmentNum, offset, cpu.getRegisterValue(registerBaseCode), cpu.getRegisterValue(registerLimitCode));
 			//Generate Trap To OS
 		}
 		
-		cpu.setDebugInfoString(String.format("\nSegment Access Request => Segment: " + segmentNum + " Offset: " + offset));
+		cpu.trace.record(Trace.MMU_SEGMENT_ACCESS, segmentNum, offset);
 		new_addr = (short) (cpu.getRegisterValue(registerBaseCode) + offset);
 		
 		return new_addr;
 	}
 	
-	private short pagingUnit(short addr){
+	private int pagingUnit(short addr, boolean write){
 		int offset = addr & 0x007F; //getting rid of the page offset
 		int pageNum = (addr >> 7) & 0x01FF; //getting rid of page number, killing sign bit if any
+		int slot = pageNum & (TLB_SIZE-1);
+		
+		cpu.trace.record(Trace.MMU_PAGE_ACCESS, pageNum, offset);
+		
+		if(tlbOwner != cpu.currentProcess || tlbVersion != tlbOwner.getPageTableVersion()) //entries are stale
+			flushTLB();
+		
+		boolean fault = false;
+		
+		if(tlbPage[slot] == pageNum){
+			++tlbHits;
+		} else {
+			++tlbMisses;
+			int frameNum = cpu.currentProcess.getPageFrame(pageNum);
+			
+			if(frameNum == -1 && pager != null && pageNum < cpu.currentProcess.getPageTableSize()){ //page fault
+				frameNum = pager.pageFault(cpu.currentProcess, pageNum);
+				cpu.trace.record(Trace.MMU_PAGE_FAULT, pageNum, frameNum);
+				flushTLB(); //the fault may have evicted another page of the process
+				fault = true;
+				
+				if(frameNum == -1){ //no frame, the process is stopped and the access dropped
+					cpu.raiseMemoryFault();
+					//Generate Trap To OS
+					return -1;
+				}
+			}
+			
+			//Frame 0 belongs to the kernel, so it is only returned for invalid pages which are not cached
+			tlbFrame[slot] = Math.max(frameNum, 0);
+			tlbPage[slot] = tlbFrame[slot] != 0 ? pageNum : -1;
+			tlbBits[slot] = 0;
+			
+			if(tlbPage[slot] == -1)
+				return tlbFrame[slot] * FRAME_SIZE + offset;
+		}
 		
-		cpu.setDebugInfoString(String.format("Page Access Request => Page: " + pageNum + " Offset: " + offset));
-		addr = (short) (cpu.currentProcess.getPageTableEntry(pageNum) * FRAME_SIZE);
-		//addr = (short) (cpu.currentProcess.pageTable.elementAt(pageNum) * FRAME_SIZE);
+		if(pager != null){ //keep the referenced and dirty bits
+			int bits = write ? PCB.PTE_REFERENCED | PCB.PTE_DIRTY : PCB.PTE_REFERENCED;
+			
+			if(fault) //the faulting access is not a reference
+				bits &= ~PCB.PTE_REFERENCED;
+			
+			if((tlbBits[slot] & bits) != bits){
+				if(cpu.currentProcess.markPageTableEntry(pageNum, bits & ~tlbBits[slot]))
+					flatOwner = null; //the flat table may map the page now
+				
+				tlbBits[slot] |= bits;
+			}
+		}
+		
+		return tlbFrame[slot] * FRAME_SIZE + offset;
+	}
+	
+	/* flushTLB - Empties the TLB, it is then refilled for the process running on the Processor */
+	public void flushTLB(){
+		for(int i=0; i<TLB_SIZE; i++)
+			tlbPage[i] = -1;
+		
+		tlbOwner = cpu.currentProcess;
+		tlbVersion = tlbOwner != null ? tlbOwner.getPageTableVersion() : 0;
+		++tlbFlushes;
+	}
+	
+	/* TLB Statistics Interface */
+	public long getTLBHits(){ return tlbHits; }
+	
+	public long getTLBMisses(){ return tlbMisses; }
+	
+	public long getTLBFlushes(){ return tlbFlushes; }
+	
+	public void resetTLBStatistics(){
+		tlbHits = tlbMisses = tlbFlushes = flatRebuilds = 0;
+	}
+	
+	public long getFlatTableRebuilds(){ return flatRebuilds; }
+	
+	public String getTLBInfoStr(){
+		long accesses = tlbHits + tlbMisses;
 		
-		addr += offset;
-		//System.out.println("Return Paging Unit: " + addr);
-		return addr;
+		return String.format(">> TLB\nHits\t: %d\nMisses\t: %d\nFlushes\t: %d\nHit Ratio\t: %.2f%%\nFlat Table Rebuilds\t: %d\n",
+				tlbHits, tlbMisses, tlbFlushes, accesses == 0 ? 0.0 : 100.0*tlbHits/accesses, flatRebuilds);
 	}
 	
 	private boolean isKernelCode(int addr)
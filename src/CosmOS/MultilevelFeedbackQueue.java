@@ -0,0 +1,168 @@
+package CosmOS;
+import java.util.LinkedList;
+
+/* MultilevelFeedbackQueue:
+ * Ready queue that moves processes between levels based on how they
+ * use the CPU. Level 0 runs first, and every level has its own quantum,
+ * usually longer for the lower levels.
+ *
+ * - A new process enters at the level of its priority (capped at the
+ *   last level).
+ * - A process that uses up its whole quantum is CPU bound and is
+ *   demoted one level. One that yields before stays at its level.
+ * - A process that wakes up after being blocked is interactive and is
+ *   promoted one level.
+ * - Aging: a process that has waited agingInterval clock ticks at its
+ *   level is promoted one level, so no process waits forever while the
+ *   higher levels are busy.
+ *
+ * The time a process starts waiting is taken from the WAITING_TIME of
+ * its PCB when it arrives and from the cycle counter when it is
+ * requeued; the PCB field is left untouched so it keeps the arrival
+ * time.
+ * */
+
+public class MultilevelFeedbackQueue implements SchedulingPolicy {
+	public static final int	DEFAULT_LEVELS = 8,
+							DEFAULT_BASE_QUANTUM = 4,
+							DEFAULT_AGING_INTERVAL = 512;
+	
+	private int levels;
+	private int quantum[];
+	private int agingInterval;
+	
+	private RunQueue readyQ = new RunQueue();
+	
+	/* Indexed by PID */
+	private int level[] = new int[ProcessTable.MAX_PIDS];
+	private long readySince[] = new long[ProcessTable.MAX_PIDS];
+	
+	private Processor cpu;
+	
+	public MultilevelFeedbackQueue(Processor p){
+		this(p, DEFAULT_LEVELS, DEFAULT_BASE_QUANTUM, DEFAULT_AGING_INTERVAL);
+	}
+	
+	/* Constructor - The quantum doubles from one level to the next, starting at baseQuantum */
+	public MultilevelFeedbackQueue(Processor p, int numLevels, int baseQuantum, int aging){
+		cpu = p;
+		levels = Math.max(1, Math.min(numLevels, RunQueue.MAX_LEVELS));
+		quantum = new int[levels];
+		agingInterval = aging;
+		
+		for(int i=0; i<levels; i++)
+			quantum[i] = Math.min(baseQuantum << i, 1 << 20);
+	}
+	
+	/* Configuration */
+	public int getLevels(){ return levels; }
+	
+	public void setQuantum(int lvl, int instructions){
+		if(lvl < 0 || lvl >= levels || instructions < 1){
+			System.out.println("MLFQ: Invalid quantum " + instructions + " for level " + lvl + ".");
+			//Generate Trap To OS
+			return;
+		}
+		
+		quantum[lvl] = instructions;
+	}
+	
+	/* setAgingInterval - Clock ticks a process waits before it is promoted, 0 turns aging off */
+	public void setAgingInterval(int ticks){
+		agingInterval = ticks;
+	}
+	
+	/* enqueue - Adds a newly arrived process at the level of its priority */
+	public void enqueue(PCB p){
+		int pid = p.getPID();
+		
+		level[pid] = Math.max(0, Math.min(p.getPriority(), levels-1));
+		readySince[pid] = cpu.cycles() - ((cpu.clock() - p.getWaitingTime()) & 0xFFFF); //16 bit stamp to cycles
+		readyQ.add(p, level[pid]);
+	}
+	
+	/* pickNext - Ages the waiting processes and removes the process to run next, null if empty */
+	public PCB pickNext(){
+		if(agingInterval > 0)
+			age();
+		
+		return readyQ.poll();
+	}
+	
+	/* quantumOf - Number of instructions the process may run at its current level */
+	public int quantumOf(PCB p){
+		return quantum[level[p.getPID()]];
+	}
+	
+	/* onQuantumExpired - Demotes the preempted process and puts it back */
+	public void onQuantumExpired(PCB p, int executed){
+		int pid = p.getPID();
+		
+		if(level[pid] < levels-1)
+			++level[pid];
+		
+		requeue(p);
+	}
+	
+	/* onYield - Puts back a process that gave up the CPU before its quantum ran out, at the same level */
+	public void onYield(PCB p, int executed){
+		requeue(p);
+	}
+	
+	/* onBlock - Takes the process off the ready queue while it is blocked */
+	public void onBlock(PCB p){
+		readyQ.remove(p);
+	}
+	
+	/* onWake - Promotes the woken process and puts it back */
+	public void onWake(PCB p){
+		int pid = p.getPID();
+		
+		if(level[pid] > 0)
+			--level[pid];
+		
+		requeue(p);
+	}
+	
+	public boolean remove(PCB p){
+		return readyQ.remove(p);
+	}
+	
+	public void setTimeSlice(int cycles){ /* not used, see setQuantum */ }
+	
+	public boolean isEmpty(){ return readyQ.isEmpty(); }
+	
+	public int size(){ return readyQ.size(); }
+	
+	public int levelOf(PCB p){ return level[p.getPID()]; }
+	
+	public LinkedList<PCB> toList(){ return readyQ.toList(); }
+	
+	public String getName(){ return "mlfq"; }
+	
+	private void requeue(PCB p){
+		readySince[p.getPID()] = cpu.cycles();
+		readyQ.add(p, level[p.getPID()]);
+	}
+	
+	/* age
+	 * Promotes the processes that have waited longer than the aging
+	 * interval. Each level is FIFO, so only the process at the front of
+	 * a level can be the oldest one; this costs one check per level.
+	 * */
+	private void age(){
+		long now = cpu.cycles();
+		
+		for(int lvl = 1; lvl < levels; lvl++){
+			PCB p;
+			
+			while((p = readyQ.peekLevel(lvl)) != null &&
+					now - readySince[p.getPID()] >= agingInterval){
+				readyQ.remove(p);
+				level[p.getPID()] = lvl-1;
+				readySince[p.getPID()] = now;
+				readyQ.add(p, lvl-1);
+			}
+		}
+	}
+}
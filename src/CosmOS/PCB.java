@@ -5,22 +5,47 @@ public class PCB implements Comparable<PCB>{
 	public static final int MAX_REGISTERS = 32,
 							SB=0x14, SL=0x15, SC=0x16,
 							//Following are the offset constants of the PCB in memory
-							PID_ = 64,
+							PID_ = 64, //low byte, high byte at PID_HIGH_
 							PRIORITY_ = 65,
 							PROC_SIZE_ = 66,
 							WAITING_TIME_ = 68,
 							EXECUTION_TIME_ = 70,
+							PID_HIGH_ = 72,
 							PAGETABLE_SIZE_ = 73,
 							PAGETABLE_ = 74,
 							MAX_ENTRIES = 27;
 	
+	/* Page Table Entries:
+	 * A page in memory has PTE_PRESENT set and its frame number in the low
+	 * bits. A page that is not holds the swap slot it was written to
+	 * instead, 0 if it has never been swapped out (see Pager).
+	 * With demand paging, the MMU sets PTE_REFERENCED when a present page
+	 * is used and PTE_DIRTY when it is written to.
+	 * */
+	public static final int	PTE_PRESENT = 0x8000,
+							PTE_REFERENCED = 0x4000,
+							PTE_DIRTY = 0x2000,
+							PTE_FRAME = 0x1FFF;
+	
 	public static Memory M;
 	
+	/* fieldCache - Holds the fields of all PCBs in Java arrays when enabled, null otherwise */
+	private static PCBFieldCache fieldCache;
+	
 	private byte baseFrame;
 	
+	/* queueNode - Entry of the PCB in the RunQueue it is waiting in, if any */
+	RunQueue.Node queueNode;
+	
+	/* pageTableVersion - Incremented whenever the page table is changed */
+	private int pageTableVersion;
+	
 	/* Constructor */
 	public PCB(int frameNum){
 		this.baseFrame = (byte)frameNum;
+		
+		if(fieldCache != null && frameNum >= 0) //the kernel frame belonged to an older PCB
+			fieldCache.release(frameNum);
 	}
 	
 	/* setMemoryLink
@@ -29,6 +54,34 @@ public class PCB implements Comparable<PCB>{
 	 */
 	public static void setMemoryLink(Memory mem){
 		M = mem;
+		
+		if(fieldCache != null)
+			fieldCache = new PCBFieldCache(mem);
+	}
+	
+	/* enableFieldCache
+	 * Turns the PCBFieldCache on or off. While it is on, the fields of
+	 * the PCBs are read and written in Java arrays and the kernel frames
+	 * are only updated by writeBack() and writeBackAll(). Turning it off
+	 * writes everything back first.
+	 */
+	public static void enableFieldCache(boolean flag){
+		if(fieldCache != null)
+			fieldCache.writeBackAll();
+		
+		fieldCache = flag ? new PCBFieldCache(M) : null;
+	}
+	
+	/* writeBack - Brings the kernel frame of this PCB up to date with the field cache */
+	public void writeBack(){
+		if(fieldCache != null)
+			fieldCache.writeBack(baseFrame);
+	}
+	
+	/* writeBackAll - Brings all kernel frames up to date, before the memory is dumped or saved */
+	public static void writeBackAll(){
+		if(fieldCache != null)
+			fieldCache.writeBackAll();
 	}
 	
 	/* Address Generation Helper Function */
@@ -36,15 +89,28 @@ public class PCB implements Comparable<PCB>{
 	
 	/* PageTable Interface */
 	private boolean addPageTableEntry(short frameNum){
+		if(fieldCache != null){
+			int slot = fieldCache.modify(baseFrame);
+			fieldCache.pageTable[slot][fieldCache.pageTableSize[slot]] = frameNum;
+			++fieldCache.pageTableSize[slot];
+			++pageTableVersion;
+			return true;
+		}
+		
 		//Add Entry
 		//System.out.printf("Writing %d to Page Table Entry at Addr: %d\n", frameNum, addrOf(PAGETABLE_+(getPageTableSize()*2)));
 		M.writeToPhysical(addrOf(PAGETABLE_+(getPageTableSize()*2)), frameNum);
 		
 		//Increment Size
 		M.writeByteToPhysical(addrOf(PAGETABLE_SIZE_), (byte)(getPageTableSize()+1));
+		++pageTableVersion;
 		return true;
 	}
 	
+	public int getPageTableVersion(){
+		return pageTableVersion;
+	}
+	
 	/* attachPageTable
 	 * Takes a Vector<Integer> as argument and copies the
 	 * page table into the internal memory of the system
@@ -67,72 +133,175 @@ public class PCB implements Comparable<PCB>{
 		}
 	}
 	
+	/* setPageTableEntry - Changes an entry of the page table, when the Pager brings a page in or out */
+	public void setPageTableEntry(int index, short entry){
+		if(index >= getPageTableSize()){
+			System.out.println("Page Table Array Out of Bound Access");
+			//Generate Trap To OS
+			return;
+		}
+		
+		if(fieldCache != null){
+			fieldCache.pageTable[fieldCache.modify(baseFrame)][index] = entry;
+			++pageTableVersion;
+			return;
+		}
+		
+		M.writeToPhysical(addrOf(PAGETABLE_+(index*2)), entry);
+		++pageTableVersion;
+	}
+	
+	/* markPageTableEntry - Sets the given referenced or dirty bits of an entry and
+	 * returns true if they were not all set. The translation does not change, so
+	 * the page table version is left as it is.
+	 * */
+	public boolean markPageTableEntry(int index, int bits){
+		short entry = getPageTableEntry(index);
+		
+		if((entry & bits) == bits)
+			return false;
+		
+		entry |= bits;
+		
+		if(fieldCache != null)
+			fieldCache.pageTable[fieldCache.modify(baseFrame)][index] = entry;
+		else
+			M.writeToPhysical(addrOf(PAGETABLE_+(index*2)), entry);
+		
+		return true;
+	}
+	
+	/* getPageFrame - Returns the frame holding the given page, -1 if the page is not in memory */
+	public int getPageFrame(int index){
+		int entry = getPageTableEntry(index) & 0xFFFF;
+		
+		return (entry & PTE_PRESENT) != 0 ? entry & PTE_FRAME : -1;
+	}
+	
 	/* getPageTableEntry
 	 * Fetches the pageTableEntry at location 'index' from
 	 * the internal memory where the PCB has been mapped.
 	 */
-	public Short getPageTableEntry(int index){
+	public short getPageTableEntry(int index){
 		if(index >= getPageTableSize()){ //max index is size-1
 			System.out.println("Page Table Array Out of Bound Access");
 			//Generate Trap To OS
 			return 0;
 		}
 		
+		if(fieldCache != null)
+			return fieldCache.pageTable[fieldCache.slot(baseFrame)][index];
+		
 		//System.out.printf("Reading %d from PageTableEntry @ index %d\n", M.readShortFromPhysical(addrOf( PAGETABLE_+(index*2))), addrOf( PAGETABLE_+(index*2)));
 		return M.readShortFromPhysical(addrOf( PAGETABLE_+(index*2)));
 	}
 	
 	/* Interface Function for Data Members */
-	public Byte getPID(){
-		return M.readByteFromPhysical( addrOf(PID_) );
+	public int getPID(){
+		if(fieldCache != null)
+			return fieldCache.pid[fieldCache.slot(baseFrame)];
+		
+		return ((M.readByteFromPhysical( addrOf(PID_HIGH_) ) & 0xFF) << 8) | (M.readByteFromPhysical( addrOf(PID_) ) & 0xFF);
 	}
 	
-	public void setPID(byte pid){
-		M.writeByteToPhysical(addrOf(PID_), pid);
+	public void setPID(int pid){
+		if(fieldCache != null){
+			fieldCache.pid[fieldCache.modify(baseFrame)] = pid;
+			return;
+		}
+		
+		M.writeByteToPhysical(addrOf(PID_), (byte)(pid & 0xFF));
+		M.writeByteToPhysical(addrOf(PID_HIGH_), (byte)(pid >> 8));
 	}
 	
-	public Byte getPriority(){
+	public byte getPriority(){
+		if(fieldCache != null)
+			return fieldCache.priority[fieldCache.slot(baseFrame)];
+		
 		return M.readByteFromPhysical( addrOf(PRIORITY_) );
 	}
 	
 	public void setPriority(byte priority){
+		if(fieldCache != null){
+			fieldCache.priority[fieldCache.modify(baseFrame)] = priority;
+			return;
+		}
+		
 		M.writeByteToPhysical(addrOf(PRIORITY_), priority);
 	}
 	
 	public short getProcessSize(){
+		if(fieldCache != null)
+			return fieldCache.processSize[fieldCache.slot(baseFrame)];
+		
 		return M.readShortFromPhysical( addrOf(PROC_SIZE_) );
 	}
 	
 	public void setProcessSize(short procSize){
+		if(fieldCache != null){
+			fieldCache.processSize[fieldCache.modify(baseFrame)] = procSize;
+			return;
+		}
+		
 		M.writeToPhysical(addrOf(PROC_SIZE_), procSize);
 	}
 	
 	public short getWaitingTime(){
+		if(fieldCache != null)
+			return fieldCache.waitingTime[fieldCache.slot(baseFrame)];
+		
 		return M.readShortFromPhysical( addrOf(WAITING_TIME_) );
 	}
 	
 	public void setWaitingTime(short waitTime){
+		if(fieldCache != null){
+			fieldCache.waitingTime[fieldCache.modify(baseFrame)] = waitTime;
+			return;
+		}
+		
 		M.writeToPhysical(addrOf(WAITING_TIME_), waitTime);
 	}
 	
 	public short getPageTableSize(){
+		if(fieldCache != null)
+			return fieldCache.pageTableSize[fieldCache.slot(baseFrame)];
+		
 		return M.readByteFromPhysical( addrOf(PAGETABLE_SIZE_) );
 	}
 	
 	public void setPageTableSize(short pTableSize){
+		if(fieldCache != null) //the short overlaps the first page table entry, so the slot is reloaded
+			fieldCache.release(baseFrame);
+		
 		M.writeToPhysical(addrOf(PAGETABLE_SIZE_), pTableSize);
+		++pageTableVersion;
 	}
 	
 	public short getExecutionTime(){
+		if(fieldCache != null)
+			return fieldCache.executionTime[fieldCache.slot(baseFrame)];
+		
 		return M.readShortFromPhysical( addrOf(EXECUTION_TIME_) );
 	}
 	
 	public void setExecutionTime(short execTime){
+		if(fieldCache != null){
+			fieldCache.executionTime[fieldCache.modify(baseFrame)] = execTime;
+			return;
+		}
+		
 		M.writeToPhysical(addrOf(EXECUTION_TIME_), execTime);
 	}
 	
 	public void incrementExecutionTime(){
-		M.writeToPhysical(addrOf(EXECUTION_TIME_), (short)(getExecutionTime()+2));
+		addExecutionTime(2);
+	}
+	
+	/* addExecutionTime - Adds to the 16 bit execution time, which stops at its maximum instead of
+	 * wrapping around. The exact CPU time is kept in Processor.accounting.
+	 * */
+	public void addExecutionTime(int time){
+		setExecutionTime( (short)Math.min(getExecutionTime() + time, Short.MAX_VALUE) );
 	}
 	
 	public Integer getBaseFrame(){
@@ -147,9 +316,9 @@ public class PCB implements Comparable<PCB>{
 	 * 
 	 * Reference: Processor.switchProcessTo()
 	 * */
-	public void updateResigsterState(Register Reg[]){
+	public void updateResigsterState(short reg[]){
 		for(int i=0; i<MAX_REGISTERS; i++){ //Copy all registers
-			this.setRegister(i, Reg[i].value());
+			M.writeToPhysical( addrOf(i*2), reg[i] );
 		}
 	}
 	
@@ -168,27 +337,21 @@ public class PCB implements Comparable<PCB>{
 		}
 	}
 	
-	/* getRegisterState
-	 * Returns an array of Registers.
+	/* loadRegisterState
+	 * Copies the saved registers into the given register file.
 	 * Helps the Processor class to restore the states of its
 	 * internal registers in the event of a context switch.
 	 * 
-	 * Reference: Processor.restoreRegistersState()
+	 * Reference: Processor.switchProcessTo()
 	 * 
 	 * Developer Tip:
 	 * This function was modified to incorporate new PCB Architecture
 	 * into the current framework of OS.
 	 * */
-	public Register[] getRegisterState(){
-		Register R[] = new Register[32];
-		
-		for(int i=0; i<32; i++)
-		{
-			R[i] = new Register();
-			R[i].setValue( M.readShortFromPhysical(addrOf(i*2)) );
+	public void loadRegisterState(short reg[]){
+		for(int i=0; i<MAX_REGISTERS; i++){
+			reg[i] = M.readShortFromPhysical(addrOf(i*2));
 		}
-		
-		return R;
 	}
 	
 	/* getPcbInfoString:
@@ -221,7 +384,7 @@ public class PCB implements Comparable<PCB>{
 	 * */
 	@Override
 	public int compareTo(PCB op) {
-		return this.getPriority().compareTo(op.getPriority());
+		return this.getPriority() - op.getPriority();
 	}
 	/*
 	@Override
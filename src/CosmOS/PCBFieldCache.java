@@ -0,0 +1,100 @@
+package CosmOS;
+
+/* PCBFieldCache:
+ * Optional copy of the PCB fields in plain Java arrays, one slot per
+ * kernel frame, so that the getters and setters of the PCB don't go
+ * through the simulated memory. A slot is filled from the kernel
+ * frame the first time its PCB is used, and its fields are written
+ * back to the kernel frame, in the same layout, at defined points:
+ * when the Processor switches away from the process, when a new PCB
+ * takes over the kernel frame, and on writeBackAll() before the memory
+ * is inspected (dumps and snapshots).
+ *
+ * The saved registers are not cached; they are only read and written
+ * at context switches anyway.
+ *
+ * Reference: PCB.enableFieldCache()
+ * */
+
+public class PCBFieldCache {
+	public static final int SLOTS = Memory.KERNEL_FRAMES;
+	
+	private Memory M;
+	
+	private boolean loaded[] = new boolean[SLOTS], dirty[] = new boolean[SLOTS];
+	
+	/* Fields */
+	int pid[] = new int[SLOTS];
+	byte priority[] = new byte[SLOTS], pageTableSize[] = new byte[SLOTS];
+	short processSize[] = new short[SLOTS], waitingTime[] = new short[SLOTS], executionTime[] = new short[SLOTS];
+	short pageTable[][] = new short[SLOTS][PCB.MAX_ENTRIES];
+	
+	public PCBFieldCache(Memory mem){
+		M = mem;
+	}
+	
+	/* slot - Returns the slot of the PCB in the given kernel frame, filling it if needed */
+	int slot(int frameNum){
+		if(!loaded[frameNum])
+			load(frameNum);
+		
+		return frameNum;
+	}
+	
+	/* modify - Like slot, for a field that is about to be changed */
+	int modify(int frameNum){
+		slot(frameNum);
+		dirty[frameNum] = true;
+		
+		return frameNum;
+	}
+	
+	private int addrOf(int frameNum, int offset){ return frameNum*M.FRAME_SIZE + offset; }
+	
+	private void load(int frameNum){
+		pid[frameNum] = ((M.readByteFromPhysical(addrOf(frameNum, PCB.PID_HIGH_)) & 0xFF) << 8) |
+						(M.readByteFromPhysical(addrOf(frameNum, PCB.PID_)) & 0xFF);
+		priority[frameNum] = M.readByteFromPhysical(addrOf(frameNum, PCB.PRIORITY_));
+		processSize[frameNum] = M.readShortFromPhysical(addrOf(frameNum, PCB.PROC_SIZE_));
+		waitingTime[frameNum] = M.readShortFromPhysical(addrOf(frameNum, PCB.WAITING_TIME_));
+		executionTime[frameNum] = M.readShortFromPhysical(addrOf(frameNum, PCB.EXECUTION_TIME_));
+		pageTableSize[frameNum] = M.readByteFromPhysical(addrOf(frameNum, PCB.PAGETABLE_SIZE_));
+		
+		for(int i=0; i<PCB.MAX_ENTRIES; i++)
+			pageTable[frameNum][i] = M.readShortFromPhysical(addrOf(frameNum, PCB.PAGETABLE_ + i*2));
+		
+		loaded[frameNum] = true;
+		dirty[frameNum] = false;
+	}
+	
+	/* writeBack - Writes the fields of a changed slot back to its kernel frame */
+	public void writeBack(int frameNum){
+		if(!loaded[frameNum] || !dirty[frameNum])
+			return;
+		
+		M.writeByteToPhysical(addrOf(frameNum, PCB.PID_), (byte)(pid[frameNum] & 0xFF));
+		M.writeByteToPhysical(addrOf(frameNum, PCB.PID_HIGH_), (byte)(pid[frameNum] >> 8));
+		M.writeByteToPhysical(addrOf(frameNum, PCB.PRIORITY_), priority[frameNum]);
+		M.writeToPhysical(addrOf(frameNum, PCB.PROC_SIZE_), processSize[frameNum]);
+		M.writeToPhysical(addrOf(frameNum, PCB.WAITING_TIME_), waitingTime[frameNum]);
+		M.writeToPhysical(addrOf(frameNum, PCB.EXECUTION_TIME_), executionTime[frameNum]);
+		M.writeByteToPhysical(addrOf(frameNum, PCB.PAGETABLE_SIZE_), pageTableSize[frameNum]);
+		
+		for(int i=0; i<PCB.MAX_ENTRIES; i++)
+			M.writeToPhysical(addrOf(frameNum, PCB.PAGETABLE_ + i*2), pageTable[frameNum][i]);
+		
+		dirty[frameNum] = false;
+	}
+	
+	/* release - Writes the slot back and empties it, when its kernel frame gets a new PCB */
+	public void release(int frameNum){
+		writeBack(frameNum);
+		loaded[frameNum] = false;
+	}
+	
+	/* writeBackAll - Brings all the kernel frames up to date */
+	public void writeBackAll(){
+		for(int i=0; i<SLOTS; i++)
+			writeBack(i);
+	}
+}
@@ -0,0 +1,38 @@
+package CosmOS;
+
+/* PageReplacementPolicy:
+ * The algorithm the Pager uses to choose the page to evict when no frame
+ * is free. The policy only keeps the frames of the resident pages; the
+ * Pager owns the page tables and the swap file, and the referenced and
+ * dirty bits are set by the MemoryManagementUnit.
+ *
+ * A frame is handed to the policy when a page is brought into it (add)
+ * and leaves it when it is picked for eviction (selectVictim) or when
+ * its process is done (remove). onFault is called before every page
+ * fault, so a policy can sample the referenced bits.
+ *
+ * Implementations: FIFOReplacementPolicy, ClockReplacementPolicy,
+ * AgingReplacementPolicy and ARCReplacementPolicy.
+ * */
+
+public interface PageReplacementPolicy {
+	/* add - The page identified by key was brought into the frame */
+	public void add(int frameNum, int key);
+	
+	/* remove - Drops the frame, its process is done */
+	public void remove(int frameNum);
+	
+	/* selectVictim - Removes and returns the frame to evict, -1 if there is none */
+	public int selectVictim(Pager pager);
+	
+	/* onFault - A page fault is about to be handled */
+	public void onFault(Pager pager);
+	
+	/* size - Number of resident frames */
+	public int size();
+	
+	/* frames - The resident frames, the next victim first where the policy has an order */
+	public int[] frames();
+	
+	public String getName();
+}
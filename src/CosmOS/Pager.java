@@ -0,0 +1,334 @@
+package CosmOS;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/* Pager:
+ * Demand paging. A process loaded while the Pager is attached to the
+ * Memory gets a page table with no page present, and a page is only
+ * given a frame when the MMU first touches it (a page fault). The
+ * frame is filled from the swap file if the page was swapped out, from
+ * the program image otherwise, or with zeros for the stack.
+ *
+ * When no frame is free, the PageReplacementPolicy (cosmos.pager.policy)
+ * chooses a page to evict and its frame is reused. Only a dirty page is
+ * written to the swap file; a clean one is read again from where it
+ * came from, its swap slot or the program image. A page keeps its swap
+ * slot once it has one, so it is written to the same place every time.
+ *
+ * The swap file is a temporary file mapped into memory, one slot per
+ * page; slot 0 is never used, a page table entry with no present bit
+ * and slot 0 means the page has never been swapped out.
+ *
+ * Reference: PCB.PTE_PRESENT, MemoryManagementUnit.pagingUnit()
+ * */
+
+public class Pager {
+	public static final int DEFAULT_SWAP_SLOTS = 4096; //512 KB, at most PCB.PTE_FRAME + 1
+	
+	private Memory M;
+	private int frameSize;
+	
+	/* swap - Contents of the swapped out pages, slots hands out its slots */
+	private ByteBuffer swap;
+	private FrameAllocator slots;
+	
+	/* Indexed by frame number, the page held by each frame and its swap slot */
+	private PCB frameOwner[];
+	private int framePage[], frameSlot[];
+	
+	/* policy - Holds the frames of the paged processes and chooses the victims */
+	private PageReplacementPolicy policy;
+	
+	/* image - Program image of every paged process, indexed by PID */
+	private ProgramImage image[] = new ProgramImage[ProcessTable.MAX_PIDS];
+	
+	/* Statistics */
+	private long faults, imageLoads, zeroFills, swapIns, swapOuts, evictions;
+	
+	/* Statistics of every paged process, indexed by PID */
+	private long processFaults[] = new long[ProcessTable.MAX_PIDS],
+				processEvictions[] = new long[ProcessTable.MAX_PIDS],
+				processWriteBacks[] = new long[ProcessTable.MAX_PIDS];
+	
+	public Pager(Memory mem){
+		this(mem, DEFAULT_SWAP_SLOTS);
+	}
+	
+	public Pager(Memory mem, int numSlots){
+		M = mem;
+		frameSize = M.FRAME_SIZE;
+		numSlots = Math.max(2, Math.min(numSlots, PCB.PTE_FRAME + 1));
+		
+		slots = new FrameAllocator(numSlots);
+		slots.reserve(0, 1); //slot 0 means no slot
+		swap = mapSwapFile(numSlots * frameSize);
+		
+		int numFrames = M.frames.getFrameCount();
+		frameOwner = new PCB[numFrames];
+		framePage = new int[numFrames];
+		frameSlot = new int[numFrames];
+		
+		policy = createPolicy(System.getProperty("cosmos.pager.policy", "fifo"), numFrames);
+	}
+	
+	/* createPolicy
+	 * Returns the replacement policy with the given name: fifo, clock,
+	 * aging (or lru) or arc, FIFO if it is unknown. The policy of a
+	 * deployment is picked with the cosmos.pager.policy system property.
+	 * */
+	public static PageReplacementPolicy createPolicy(String name, int numFrames){
+		if(name.equalsIgnoreCase("clock"))
+			return new ClockReplacementPolicy();
+		else if(name.equalsIgnoreCase("aging") || name.equalsIgnoreCase("lru"))
+			return new AgingReplacementPolicy(numFrames);
+		else if(name.equalsIgnoreCase("arc"))
+			return new ARCReplacementPolicy(numFrames);
+		
+		if(!name.equalsIgnoreCase("fifo"))
+			System.out.println("Pager: Unknown replacement policy " + name + ", using fifo.");
+		
+		return new FIFOReplacementPolicy();
+	}
+	
+	/* setReplacementPolicy - Changes the policy, the resident pages are handed over */
+	public void setReplacementPolicy(PageReplacementPolicy p){
+		for(int frameNum : policy.frames())
+			p.add(frameNum, keyOf(frameOwner[frameNum], framePage[frameNum]));
+		
+		policy = p;
+	}
+	
+	public PageReplacementPolicy getReplacementPolicy(){ return policy; }
+	
+	/* mapSwapFile - Maps a temporary swap file, or keeps the swap in the heap if that fails */
+	private static ByteBuffer mapSwapFile(int size){
+		try {
+			File file = File.createTempFile("cosmos", ".swap");
+			file.deleteOnExit();
+			
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(size);
+				return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size); //stays valid after close
+			} finally {
+				raf.close();
+			}
+		} catch(IOException ioe) {
+			System.out.println("Pager: Unable to map the swap file, swapping to memory instead.");
+			return ByteBuffer.allocate(size);
+		}
+	}
+	
+	/* attach - Pages the process in on demand from the given image, its page table must have no page present */
+	public void attach(PCB p, ProgramImage img){
+		int pid = p.getPID();
+		
+		image[pid] = img;
+		processFaults[pid] = processEvictions[pid] = processWriteBacks[pid] = 0;
+	}
+	
+	/* pageFault
+	 * Brings the given page of the process into memory and returns its
+	 * frame, or -1 if the page does not exist or no frame could be freed.
+	 * */
+	public int pageFault(PCB p, int pageNum){
+		if(pageNum >= p.getPageTableSize())
+			return -1;
+		
+		int entry = p.getPageTableEntry(pageNum) & 0xFFFF;
+		if((entry & PCB.PTE_PRESENT) != 0)
+			return entry & PCB.PTE_FRAME;
+		
+		policy.onFault(this);
+		
+		int frameNum = allocateFrame();
+		if(frameNum == -1){
+			System.out.println("Pager: Out of memory, no frame can be freed for page " + pageNum + " of PID " + p.getPID() + ".");
+			//Generate Trap To OS
+			return -1;
+		}
+		
+		int slot = entry & PCB.PTE_FRAME;
+		
+		++faults;
+		++processFaults[p.getPID()];
+		if(slot != 0)
+			swapIn(slot, frameNum);
+		else
+			loadFromImage(image[p.getPID()], pageNum, frameNum);
+		
+		frameOwner[frameNum] = p;
+		framePage[frameNum] = pageNum;
+		frameSlot[frameNum] = slot;
+		policy.add(frameNum, keyOf(p, pageNum));
+		
+		p.setPageTableEntry(pageNum, (short)(frameNum | PCB.PTE_PRESENT)); //referenced and dirty bits are set by the MMU
+		return frameNum;
+	}
+	
+	/* testAndClearReferenced - Returns the referenced bit of the page in the frame and clears it */
+	public boolean testAndClearReferenced(int frameNum){
+		PCB owner = frameOwner[frameNum];
+		int entry = owner.getPageTableEntry(framePage[frameNum]) & 0xFFFF;
+		
+		if((entry & PCB.PTE_REFERENCED) == 0)
+			return false;
+		
+		owner.setPageTableEntry(framePage[frameNum], (short)(entry & ~PCB.PTE_REFERENCED)); //the MMU sets it again on the next use
+		return true;
+	}
+	
+	/* keyOf - Identifies a page of a process across evictions */
+	private static int keyOf(PCB p, int pageNum){
+		return p.getPID() * PCB.MAX_ENTRIES + pageNum;
+	}
+	
+	/* readPage - Copies a page of the process into dst, wherever the page is, without bringing it in */
+	public void readPage(PCB p, int pageNum, byte dst[], int dstOffset){
+		int entry = p.getPageTableEntry(pageNum) & 0xFFFF;
+		
+		if((entry & PCB.PTE_PRESENT) != 0){
+			M.readFrame(entry & PCB.PTE_FRAME, dst, dstOffset);
+		} else if((entry & PCB.PTE_FRAME) != 0){
+			ByteBuffer src = swap.duplicate();
+			src.position((entry & PCB.PTE_FRAME) * frameSize);
+			src.get(dst, dstOffset, frameSize);
+		} else {
+			ProgramImage img = image[p.getPID()];
+			int start = pageNum * frameSize,
+				length = img == null ? 0 : Math.max(0, Math.min(frameSize, img.length() - start));
+			
+			for(int i=0; i<frameSize; i++)
+				dst[dstOffset + i] = i < length ? img.get(start + i) : 0;
+		}
+	}
+	
+	/* release - Frees the frames and swap slots of a process that is done */
+	public void release(PCB p){
+		for(int i=0; i<p.getPageTableSize(); i++){
+			int entry = p.getPageTableEntry(i) & 0xFFFF;
+			
+			if((entry & PCB.PTE_PRESENT) != 0){
+				int frameNum = entry & PCB.PTE_FRAME;
+				
+				if(frameOwner[frameNum] == p){
+					policy.remove(frameNum);
+					frameOwner[frameNum] = null;
+				}
+				
+				if(frameSlot[frameNum] != 0)
+					slots.free(frameSlot[frameNum]);
+				
+				frameSlot[frameNum] = 0;
+				M.frames.free(frameNum);
+			} else if((entry & PCB.PTE_FRAME) != 0){
+				slots.free(entry & PCB.PTE_FRAME);
+			}
+		}
+		
+		image[p.getPID()] = null;
+	}
+	
+	/* allocateFrame - Returns a free frame, evicting a page if there is none, -1 if none can be evicted */
+	private int allocateFrame(){
+		int frameNum = M.frames.allocate();
+		
+		return frameNum != -1 ? frameNum : evict();
+	}
+	
+	/* evict - Evicts the page chosen by the policy, writing it out if it is dirty, and returns its frame */
+	private int evict(){
+		int frameNum = policy.selectVictim(this);
+		if(frameNum == -1)
+			return -1;
+		
+		PCB owner = frameOwner[frameNum];
+		int pageNum = framePage[frameNum], slot = frameSlot[frameNum];
+		boolean dirty = (owner.getPageTableEntry(pageNum) & PCB.PTE_DIRTY) != 0;
+		
+		if(dirty){
+			if(slot == 0 && (slot = slots.allocate()) == -1){
+				System.out.println("Pager: The swap file is full.");
+				//Generate Trap To OS
+				policy.add(frameNum, keyOf(owner, pageNum)); //stays in memory
+				return -1;
+			}
+			
+			swapOut(frameNum, slot);
+			++processWriteBacks[owner.getPID()];
+		}
+		
+		//A clean page is read again from its swap slot, or from the image if it has none
+		owner.setPageTableEntry(pageNum, (short)slot);
+		frameOwner[frameNum] = null;
+		frameSlot[frameNum] = 0;
+		++evictions;
+		++processEvictions[owner.getPID()];
+		
+		return frameNum;
+	}
+	
+	private void swapIn(int slot, int frameNum){
+		ByteBuffer src = swap.duplicate();
+		src.position(slot * frameSize);
+		src.limit(src.position() + frameSize);
+		
+		M.writeFrame(frameNum, src);
+		++swapIns;
+	}
+	
+	private void swapOut(int frameNum, int slot){
+		ByteBuffer dst = swap.duplicate();
+		dst.position(slot * frameSize);
+		
+		M.readFrame(frameNum, dst);
+		++swapOuts;
+	}
+	
+	/* loadFromImage - Fills the frame with a page of the program, zeros past its end (stack) */
+	private void loadFromImage(ProgramImage img, int pageNum, int frameNum){
+		int start = pageNum * frameSize;
+		
+		if(img == null || start >= img.length()){
+			M.fillFrame(frameNum, (byte)0);
+			++zeroFills;
+			return;
+		}
+		
+		if(img.length() - start < frameSize) //partial page
+			M.fillFrame(frameNum, (byte)0);
+		
+		ByteBuffer src = img.contents();
+		src.position(start);
+		
+		M.writeFrame(frameNum, src);
+		++imageLoads;
+	}
+	
+	/* Statistics Interface */
+	public long getPageFaults(){ return faults; }
+	
+	public long getEvictions(){ return evictions; }
+	
+	/* getWriteBacks - Dirty pages written to the swap file */
+	public long getWriteBacks(){ return swapOuts; }
+	
+	public int getResidentPages(){ return policy.size(); }
+	
+	public int getFreeSwapSlots(){ return slots.getFreeFrameCount(); }
+	
+	/* Statistics of a process, kept until its PID is reused */
+	public long getPageFaults(int pid){ return processFaults[pid]; }
+	
+	public long getEvictions(int pid){ return processEvictions[pid]; }
+	
+	public long getWriteBacks(int pid){ return processWriteBacks[pid]; }
+	
+	public String getStatisticsStr(){
+		return String.format(">> Pager (%s)\nPage Faults\t: %d\nFrom Image\t: %d\nZero Filled\t: %d\nSwapped In\t: %d\nEvictions\t: %d\nDirty Write-Backs\t: %d\nResident Pages\t: %d\nFree Swap Slots\t: %d\n",
+				policy.getName(), faults, imageLoads, zeroFills, swapIns, evictions, swapOuts, policy.size(), slots.getFreeFrameCount());
+	}
+}
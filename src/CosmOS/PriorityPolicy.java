@@ -0,0 +1,84 @@
+package CosmOS;
+import java.util.LinkedList;
+
+/* PriorityPolicy:
+ * Strict priority, the default policy of the Scheduler. Processes with
+ * a priority below 16 are queued at the level of their priority, lowest
+ * level first. All the other processes share the LOW_PRIORITY_LEVEL list
+ * and are run round robin. A process runs only while no process of a
+ * higher level is ready.
+ *
+ * Quanta:
+ * Number of instructions a process of each priority runs before the
+ * timer interrupt of the Processor preempts it; it then goes to the back
+ * of its level. Low priority processes get half the time slice, since
+ * every instruction takes two cycles.
+ * */
+
+public class PriorityPolicy implements SchedulingPolicy {
+	public static final int	HIGH_PRIORITY_LEVELS = 16,
+							LOW_PRIORITY_LEVEL = 16;
+	
+	public static final int DEFAULT_HIGH_QUANTUM = 64;
+	
+	private RunQueue readyQ = new RunQueue();
+	private int quantum[] = new int[RunQueue.MAX_LEVELS];
+	
+	public PriorityPolicy(int timeSlice){
+		for(int i=0; i<HIGH_PRIORITY_LEVELS; i++)
+			quantum[i] = DEFAULT_HIGH_QUANTUM;
+		
+		setTimeSlice(timeSlice);
+	}
+	
+	/* readyLevelOf - Returns the level of the ready queue for the given priority */
+	public static int readyLevelOf(int priority){
+		return priority < HIGH_PRIORITY_LEVELS ? priority : LOW_PRIORITY_LEVEL;
+	}
+	
+	public void enqueue(PCB p){ readyQ.add(p, readyLevelOf(p.getPriority())); }
+	
+	public PCB pickNext(){ return readyQ.poll(); }
+	
+	/* quantumOf - Returns the quantum of the priority, priorities above 31 share the last one */
+	public int quantumOf(PCB p){
+		return quantum[Math.min(p.getPriority(), RunQueue.MAX_LEVELS-1)];
+	}
+	
+	public void onQuantumExpired(PCB p, int executed){ enqueue(p); }
+	
+	public void onYield(PCB p, int executed){ enqueue(p); }
+	
+	public void onBlock(PCB p){ readyQ.remove(p); }
+	
+	public void onWake(PCB p){ enqueue(p); }
+	
+	public boolean remove(PCB p){ return readyQ.remove(p); }
+	
+	public void setTimeSlice(int cycles){
+		for(int i=HIGH_PRIORITY_LEVELS; i<RunQueue.MAX_LEVELS; i++)
+			quantum[i] = Math.max(1, (cycles+1)/2);
+	}
+	
+	/* setQuantum - Sets the number of instructions a process of the given priority runs before it is preempted */
+	public void setQuantum(int priority, int instructions){
+		if(priority < 0 || priority >= RunQueue.MAX_LEVELS || instructions < 1){
+			System.out.println("Scheduler: Invalid quantum " + instructions + " for priority " + priority + ".");
+			//Generate Trap To OS
+			return;
+		}
+		
+		quantum[priority] = instructions;
+	}
+	
+	public boolean isEmpty(){ return readyQ.isEmpty(); }
+	
+	public int size(){ return readyQ.size(); }
+	
+	public LinkedList<PCB> toList(){ return readyQ.toList(); }
+	
+	/* toList - Returns the processes queued at the given priority levels */
+	public LinkedList<PCB> toList(int fromLevel, int toLevel){ return readyQ.toList(fromLevel, toLevel); }
+	
+	public String getName(){ return "priority"; }
+}
@@ -0,0 +1,38 @@
+package CosmOS;
+
+/* ProcessAccounting:
+ * 64 bit CPU and waiting time of every process, indexed by PID. The PCB
+ * keeps its execution and waiting time as 16 bit values in the kernel
+ * frame, which overflow after a few thousand instructions; this side
+ * table holds the exact values in cycles of the Processor.
+ *
+ * The Processor charges the cycles of every instruction to the current
+ * process, the Scheduler starts the account when the process arrives.
+ * The waiting time is the time since the arrival that the process was
+ * not on the CPU.
+ * */
+
+public class ProcessAccounting {
+	private long arrival[] = new long[ProcessTable.MAX_PIDS];
+	private long cpuCycles[] = new long[ProcessTable.MAX_PIDS];
+	
+	/* start - Opens the account of a newly arrived process */
+	public void start(int pid, long now){
+		arrival[pid] = now;
+		cpuCycles[pid] = 0;
+	}
+	
+	/* charge - Adds CPU cycles to the account of the process */
+	public void charge(int pid, long cycles){
+		cpuCycles[pid] += cycles;
+	}
+	
+	public long getArrival(int pid){ return arrival[pid]; }
+	
+	public long getCPUTime(int pid){ return cpuCycles[pid]; }
+	
+	/* getWaitingTime - Cycles since the arrival that the process was not running */
+	public long getWaitingTime(int pid, long now){
+		return now - arrival[pid] - cpuCycles[pid];
+	}
+}
@@ -0,0 +1,88 @@
+package CosmOS;
+
+/* ProcessTable:
+ * Maps every PID in use to its PCB and the state of the process, so
+ * that a process is found without scanning the queues of the Scheduler
+ * or reading PIDs out of the kernel frames.
+ *
+ * Free PIDs are kept in a bitmap, one bit per PID, set if the PID is
+ * in use. A new process asks for a PID with a hint (the PID stored in
+ * its program file) and gets the first free PID from the hint onwards,
+ * wrapping around at MAX_PIDS.
+ * */
+
+public class ProcessTable {
+	public static final int MAX_PIDS = 1024;
+	
+	/* Process States */
+	public static final int	READY = 0, RUNNING = 1, BLOCKED = 2;
+	
+	private static final int WORD_BITS = 64;
+	
+	private PCB table[] = new PCB[MAX_PIDS];
+	private int state[] = new int[MAX_PIDS];
+	private long pidBitmap[] = new long[MAX_PIDS / WORD_BITS];
+	private int count;
+	
+	/* allocatePID - Reserves the first free PID starting at the hint, -1 if all are in use */
+	public int allocatePID(int hint){
+		if(count == MAX_PIDS)
+			return -1;
+		
+		int start = ((hint % MAX_PIDS) + MAX_PIDS) % MAX_PIDS;
+		int word = start / WORD_BITS;
+		long free = ~pidBitmap[word] & (-1L << (start % WORD_BITS)); //free PIDs at or after the hint
+		
+		for(int i=0; i<=pidBitmap.length; i++){
+			if(free != 0){
+				int pid = word*WORD_BITS + Long.numberOfTrailingZeros(free);
+				pidBitmap[word] |= 1L << (pid % WORD_BITS);
+				++count;
+				return pid;
+			}
+			
+			word = (word + 1) % pidBitmap.length;
+			free = ~pidBitmap[word];
+		}
+		
+		return -1;
+	}
+	
+	/* add - Enters the PCB under its allocated PID */
+	public void add(int pid, PCB p, int processState){
+		table[pid] = p;
+		state[pid] = processState;
+	}
+	
+	/* remove - Drops the process and frees its PID */
+	public void remove(int pid){
+		if(pid < 0 || pid >= MAX_PIDS || !isAllocated(pid))
+			return;
+		
+		table[pid] = null;
+		pidBitmap[pid / WORD_BITS] &= ~(1L << (pid % WORD_BITS));
+		--count;
+	}
+	
+	public boolean isAllocated(int pid){
+		return (pidBitmap[pid / WORD_BITS] & (1L << (pid % WORD_BITS))) != 0;
+	}
+	
+	/* get - Returns the PCB of the given PID, null if there is no such process */
+	public PCB get(int pid){
+		if(pid < 0 || pid >= MAX_PIDS)
+			return null;
+		
+		return table[pid];
+	}
+	
+	public int getState(int pid){
+		return state[pid];
+	}
+	
+	public void setState(int pid, int processState){
+		state[pid] = processState;
+	}
+	
+	public int size(){ return count; }
+}
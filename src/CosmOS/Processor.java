@@ -15,6 +15,10 @@ public class Processor {
 	/* Class Constants */
 	public static final int MAX_REGISTERS = 32;
 	
+	/* Reasons for runQuantum to return */
+	public static final int	STOP_QUANTUM = 0, STOP_HALT = 1, STOP_TRAP = 2, STOP_NO_PROCESS = 3, STOP_TIMER = 4, STOP_SYSCALL = 5;
+	private static final int CONTINUE = -1;
+	
 	/* Register index aliases:
 	 * This naming convention used the acronyms for register names to increase readability.
 	 * AC stands for Accumulator, DR for Data Register, IR for Instruction Register, AR for Address Register
@@ -29,10 +33,12 @@ public class Processor {
 	/* Constants for flag register's bit numbers. */
 	private static final int	CARRY = 0, ZERO = 1, SIGN = 2, OVERFLOW = 3;
 	
-	/* 0-15 General Purpose Registers
+	/* Register File:
+	 * 0-15 General Purpose Registers
 	 * 15-31 Special Purpose Registers
+	 * The operations on register values are implemented by the Register class.
 	 * */
-	public Register R[] = new Register[MAX_REGISTERS];
+	public short reg[] = new short[MAX_REGISTERS];
 	
 	/* Memory Unit Reference:
 	 * The Memory unit is outside the Processor. Therefore, only
@@ -51,73 +57,312 @@ public class Processor {
 	/* programStack - Helps the Processor Class push and pop elements out of the stack */
 	public ProgramStack programStack;
 	
-	private String debugInfoString = new String();
+	/* iCache - Holds the decoded instructions so that code is fetched and decoded only once */
+	private InstructionCache iCache;
+	
+	/* translator - Compiles the hot basic blocks run by runQuantum */
+	private BlockTranslator translator;
+	
+	/* segmentVersion - Incremented whenever a segment base or limit register may have changed */
+	public int segmentVersion;
+	
+	/* Book-keeping for runQuantum */
+	private byte lastOpcode;
+	private int lastPhysAddr, quantumLength;
+	
+	/* Timer Device:
+	 * Counts down the instructions executed and raises an interrupt every
+	 * timerInterval instructions. An interval of 0 turns the timer off.
+	 * */
+	private int timerInterval, timerCounter;
+	private boolean timerInterrupt;
+	
+	/* System Call:
+	 * ACT stops the process with STOP_SYSCALL, leaving the service number
+	 * (T1) and its argument (T2) for the OS. CC is already past the ACT,
+	 * so the process resumes after it.
+	 * */
+	private boolean syscallPending;
+	private int syscallService, syscallArgument;
+	
+	/* Memory Fault:
+	 * Raised by the MMU when a page can't be brought in. The access is
+	 * dropped by the Memory and the process stops with STOP_TRAP at the
+	 * end of the instruction.
+	 * */
+	private boolean memoryFault;
+	
+	/* trace - Records the debug events of the Processor, the MMU and the Scheduler */
+	public Trace trace;
+	
+	/* cycles - 64 bit cycle counter, one cycle per byte of instruction executed */
+	private long cycles;
 	
-	private short clock;
+	/* accounting - 64 bit CPU time of every process */
+	public ProcessAccounting accounting = new ProcessAccounting();
 	
-	/* Constructor: Allocate register objects to register array */
+	/* Constructor */
 	public Processor(Memory mem){
 		//Attach memory
 		this.M = mem;
 		
-		//Allocating Register Objects
-		for(int i=0; i<MAX_REGISTERS; i++){
-			R[i] = new Register();
-			R[i].setValue((short) 0);
-		}
-		
 		//Configure Stack Class
-		programStack = new ProgramStack(R[SB], R[SL], R[SC]);
+		programStack = new ProgramStack(reg);
 		programStack.setMemoryLink(M);
+		
+		//Configure Instruction Cache
+		iCache = new InstructionCache(M);
+		M.setInstructionCache(iCache);
+		translator = new BlockTranslator(this, M, iCache);
+		
+		trace = new Trace(this, Trace.DEFAULT_CAPACITY);
 	}
 	
-	/* Returns the value of the internal CPU Clock */
-	public short clock(){ return clock; }
+	/* Returns the value of the internal CPU Clock, the low 16 bits of the cycle counter */
+	public short clock(){ return (short)cycles; }
+	
+	/* cycles - Returns the 64 bit cycle counter, it does not wrap */
+	public long cycles(){ return cycles; }
+	
+	/* idle - Lets the given number of cycles pass without running any process */
+	public void idle(long n){ cycles += n; }
 	
 	/* Provides an interface to the external entities to set the runningProcess reference */
 	public void switchProcessTo(PCB currProc){
 		//Save state of current PCB
-		if(currentProcess != null)
-			currentProcess.updateResigsterState(R);
+		if(currentProcess != null){
+			currentProcess.updateResigsterState(reg);
+			currentProcess.writeBack();
+		}
 		
 		//Restore Processor State with new PCB
 		currentProcess = currProc;
-		restoreRegistersState(currentProcess.getRegisterState());
+		currentProcess.loadRegisterState(reg);
+		++segmentVersion;
 	}
 	
-	/* restoreRegisters - Restores the state of the registers given an array of registers as parameter */
-	private void restoreRegistersState(Register Reg[]){
-		for(int i=0; i<MAX_REGISTERS; i++){
-			R[i].setValue( Reg[i].value() ); //To ensure that refs of registers inside CPU aren't changed
-		}
+	/* isSegmentRegister - Returns true for the base and limit registers of the segments */
+	public static boolean isSegmentRegister(int code){
+		return code == CB || code == CL || code == SB || code == SL || code == DB || code == DL;
 	}
 	
 	/* executeNextInstructions - executes the next instruction pointed to be the CodeCounter
 	 * Returns true if last instruction has been executed or if the process needs to terminate.
+	 * A system call does not end the process, it is left for getSyscallService().
 	 * */
 	public boolean execNextIntruction(){
-		setDebugInfoString(String.format("Processor: CodeCounter => %h", R[CC].value()));
-		byte opcode = M.read( R[CC].value() );
-		int instOffset = exec(opcode);
-		clock += instOffset; //Increment CPU clock - 1 ms =~ 1 instr.
+		long start = cycles;
+		int status = step( M.physicalAddressOf(reg[CC]) );
+		tickTimer(1);
 		
 		if(currentProcess != null){
 			currentProcess.incrementExecutionTime(); //Increment +2 in Execution Time inside PCB
+			accounting.charge(currentProcess.getPID(), cycles - start);
 		} else {
-			setDebugInfoString("Critical Error: No PCB loaded into the CPU. Something really bad happened in the execNextInstruction().");
+			trace.record(Trace.CPU_NO_PROCESS);
 			return false;
 		}
 		
+		return status != CONTINUE && status != STOP_SYSCALL;
+	}
+	
+	/* runQuantum - executes up to maxInstructions instructions of the current
+	 * process in a tight loop and returns the reason it stopped, one of the
+	 * STOP_ constants. The number of instructions executed is returned by
+	 * lastQuantumLength(). If the timer is on, the quantum also ends when
+	 * it fires, with STOP_TIMER.
+	 * 
+	 * The execution time is kept in a local and written back to the PCB once,
+	 * when the quantum ends or the process halts or traps. Basic blocks are
+	 * counted every time they are entered. Once a block is hot, it is compiled
+	 * by the BlockTranslator and run as a whole from then on.
+	 * */
+	public int runQuantum(int maxInstructions){
+		if(currentProcess == null){
+			trace.record(Trace.CPU_NO_PROCESS);
+			quantumLength = 0;
+			return STOP_NO_PROCESS;
+		}
+		
+		int executed = 0, status = CONTINUE;
+		
+		if(timerInterval != 0 && maxInstructions > timerCounter) //stop at the timer interrupt
+			maxInstructions = timerCounter;
+		boolean blockEntry = true;
+		long start = cycles;
+		
+		while(executed < maxInstructions){
+			int physAddr = M.physicalAddressOf( reg[CC] );
+			InstructionCache.DecodedFrame frame = (physAddr < 0) ? null : iCache.lookup(physAddr);
+			
+			if(frame != null && blockEntry){
+				int offset = physAddr % InstructionCache.FRAME_SIZE;
+				CompiledBlock block = frame.blockAt(offset);
+				
+				if(block == null && ++frame.heat[offset] >= BlockTranslator.HOT_THRESHOLD){
+					frame.heat[offset] = 0;
+					block = translator.translate(physAddr / InstructionCache.FRAME_SIZE, offset);
+				}
+				
+				if(block != null && block.length <= maxInstructions - executed){
+					executed += runBlock(block);
+					
+					if(memoryFault){
+						memoryFault = false;
+						status = STOP_TRAP;
+						break;
+					}
+					continue;
+				}
+			}
+			
+			//Interpret a single instruction
+			status = step(physAddr, frame);
+			++executed;
+			
+			if(status != CONTINUE)
+				break;
+			
+			blockEntry = endOfBlock();
+		}
+		
+		currentProcess.addExecutionTime(2*executed);
+		accounting.charge(currentProcess.getPID(), cycles - start);
+		quantumLength = executed;
+		
+		if(tickTimer(executed) && status == CONTINUE)
+			return STOP_TIMER;
+		
+		return status == CONTINUE ? STOP_QUANTUM : status;
+	}
+	
+	/* setTimer - Makes the timer interrupt fire every given number of instructions, 0 turns it off */
+	public void setTimer(int instructions){
+		timerInterval = instructions;
+		timerCounter = instructions;
+		timerInterrupt = false;
+	}
+	
+	/* timerInterruptPending - Returns true if the timer fired since the interrupt was last acknowledged */
+	public boolean timerInterruptPending(){ return timerInterrupt; }
+	
+	public void acknowledgeTimerInterrupt(){ timerInterrupt = false; }
+	
+	/* tickTimer - Counts down the executed instructions, returns true if the timer fired */
+	private boolean tickTimer(int executed){
+		if(timerInterval == 0)
+			return false;
+		
+		timerCounter -= executed;
+		if(timerCounter > 0)
+			return false;
+		
+		timerCounter = timerInterval; //periodic
+		timerInterrupt = true;
+		return true;
+	}
+	
+	/* raiseMemoryFault - Called by the MMU when a page can't be brought in */
+	public void raiseMemoryFault(){ memoryFault = true; }
+	
+	/* getSyscallService - Service number of the last system call (ACT) */
+	public int getSyscallService(){ return syscallService; }
+	
+	/* getSyscallArgument - Argument of the last system call (ACT) */
+	public int getSyscallArgument(){ return syscallArgument; }
+	
+	/* lastQuantumLength - Returns the number of instructions run by the last runQuantum */
+	public int lastQuantumLength(){ return quantumLength; }
+	
+	/* step - executes the instruction at the given physical address without
+	 * any accounting in the PCB. Returns CONTINUE, STOP_HALT, STOP_TRAP or STOP_SYSCALL.
+	 * */
+	private int step(int physAddr){
+		return step(physAddr, (physAddr < 0) ? null : iCache.lookup(physAddr));
+	}
+	
+	private int step(int physAddr, InstructionCache.DecodedFrame frame){
+		trace.record(Trace.CPU_FETCH, reg[CC] & 0xFFFF);
+		byte opcode;
+		int instOffset;
+		
+		if(physAddr < 0){ //the code page could not be brought in
+			memoryFault = false;
+			return STOP_TRAP;
+		}
+		
+		if(frame != null){ //run from the decoded record
+			int offset = physAddr % InstructionCache.FRAME_SIZE;
+			opcode = frame.opcode[offset];
+			loadOperands(frame, offset);
+			trace.record(Trace.CPU_INSTRUCTION, opcode & 0xFF);
+			instOffset = dispatch(opcode);
+		} else { //fetch and decode from memory
+			opcode = M.readByteFromPhysical(physAddr);
+			instOffset = exec(opcode);
+		}
+		
+		cycles += instOffset; //Increment CPU clock - 1 ms =~ 1 instr.
+		lastOpcode = opcode;
+		lastPhysAddr = physAddr;
+		
+		boolean fault = memoryFault;
+		memoryFault = false;
+		
 		if(instOffset == 0) { //If Illegal Instruction is encountered
-			setDebugInfoString("Terminating process due to illegal instruction.");
+			trace.record(Trace.CPU_ILLEGAL_INSTRUCTION);
+			//Generate Trap To OS
+			return STOP_TRAP;
+		} else if(fault) { //A page used by the instruction could not be brought in
+			syscallPending = false;
 			//Generate Trap To OS
-			return true;
+			return STOP_TRAP;
+		} else if(syscallPending) { //ACT, resume after it
+			syscallPending = false;
+			reg[CC] += instOffset;
+			return STOP_SYSCALL;
 		} else if(opcode != 0xF3) { //If last instruction is NOT encountered
-			R[CC].inc( instOffset );
-			return false;
+			reg[CC] += instOffset;
+			return CONTINUE;
 		} else { //If last instruction IS encountered
-			return true;
+			return STOP_HALT;
+		}
+	}
+	
+	/* endOfBlock - Returns true if the last executed instruction ended its basic block */
+	private boolean endOfBlock(){
+		int offset = lastPhysAddr % InstructionCache.FRAME_SIZE;
+		return BlockTranslator.endsBlock(lastOpcode) ||
+				offset + InstructionCache.instructionSize(lastOpcode) >= InstructionCache.FRAME_SIZE;
+	}
+	
+	/* runBlock - Runs a compiled block and returns the number of instructions
+	 * executed. Operands are loaded into AR, T1 & T2 and CC is advanced for
+	 * every instruction, so the registers are in the same state as if the
+	 * block had been interpreted. The clock is updated once for the whole block.
+	 * */
+	private int runBlock(CompiledBlock block){
+		int executed = 0, blockCycles = 0;
+		
+		while(executed < block.length){
+			reg[AR] = reg[CC];
+			reg[T1] = block.operand1[executed];
+			if(block.loadsT2[executed])
+				reg[T2] = block.operand2[executed];
+			
+			block.ops[executed].exec();
+			reg[CC] += block.size[executed];
+			blockCycles += block.size[executed];
+			++executed;
+			
+			if(!block.valid || memoryFault) //the block wrote over its own code or faulted
+				break;
 		}
+		
+		cycles += blockCycles;
+		
+		trace.record(Trace.CPU_BLOCK, executed);
+		return executed;
 	}
 	
 	/* getInstructionType - returns the classification
@@ -131,32 +376,49 @@ public class Processor {
 	/* execute - executes the operation specified
 	 * by the opcode.
 	 * 
-	 * This function identifies the type of instruction
-	 * and calls their respective handlers. Note that
-	 * those handlers use the function readOperands that
-	 * reads the operands into R[T1] and R[T2]. 
+	 * This function reads the operands into T1 and
+	 * T2 using readOperands, and then passes the
+	 * opcode on to dispatch.
 	 * */
 	public int exec(byte opcode){
+		trace.record(Trace.CPU_INSTRUCTION, opcode & 0xFF);
+		readOperands( getInstructionType(opcode) );
+		
+		return dispatch(opcode);
+	}
+	
+	/* dispatch - identifies the type of instruction
+	 * and calls their respective handlers. Expects
+	 * the operands to be in T1 and T2 already, and
+	 * passes their values on to the handlers.
+	 * Returns the size of the instruction, 0 if the
+	 * opcode is illegal.
+	 * */
+	private int dispatch(byte opcode){
+		short t1 = reg[T1], t2 = reg[T2];
+		
+		if(isSegmentRegister(t1)) //translations made with the old segment registers are stale
+			++segmentVersion;
+		
 		short instCount = 0;
-		setDebugInfoString(String.format("__Instruction: %2h\n", opcode));
 		switch(getInstructionType(opcode)){
 			case 0x1: //register reference instruction
-				execRRI(opcode);
+				execRRI(opcode, t1, t2);
 				instCount = 3;
 				break;
 			
 			case 0x3: //register immediate instruction
-				execRII(opcode);
+				execRII(opcode, t1, t2);
 				instCount = 4;
 				break;
 			
 			case 0x5: //memory instruction
-				execMI(opcode);
+				execMI(opcode, t1, t2);
 				instCount = 4;
 				break;
 			
 			case 0x7: //single operand instruction
-				execSOI(opcode);
+				execSOI(opcode, t1);
 				instCount = 2;
 				break;
 			
@@ -166,7 +428,7 @@ public class Processor {
 				break;
 			
 			default: //invalid instruction
-				setDebugInfoString("Unidentified opcode passed to exec(). The instruction code does not exist.");
+				trace.record(Trace.CPU_UNKNOWN_OPCODE, opcode & 0xFF);
 				instCount = 0;
 				break;
 		}
@@ -174,187 +436,182 @@ public class Processor {
 		return instCount;
 	}
 	
-	/* execRRI - Handles the Register-Register Instruction */
-	private void execRRI(byte opcode){
-		readOperands( getInstructionType(opcode) );
-		
+	/* execRRI - Handles the Register-Register Instruction, t1 and t2 being the register codes */
+	private void execRRI(byte opcode, short t1, short t2){
 		switch(opcode){
 			case 0x16: //R[T1] <= R[T2]
-				R[R[T1].value()].copy( R[R[T2].value()] );
+				reg[t1] = reg[t2];
 				break;
-				
+			
 			case 0x17: //R[T1] <= R[T1] + R[T2]
-				R[R[T1].value()].add( R[R[T2].value()] );
+				reg[t1] = Register.add(reg[t1], reg[t2]);
 				break;
 			
 			case 0x18: //R[T1] <= R[T1] - R[T2]
-				R[R[T1].value()].sub( R[R[T2].value()] );
+				reg[t1] = Register.sub(reg[t1], reg[t2]);
 				break;
 			
 			case 0x19: //R[T1] <= R[T1] * R[T2]
-				R[R[T1].value()].mul( R[R[T2].value()] );
+				reg[t1] = Register.mul(reg[t1], reg[t2]);
 				break;
 			
 			case 0x1A: //R[T1] <= R[T1] / R[T2]
-				R[R[T1].value()].div( R[R[T2].value()] );
+				reg[t1] = Register.div(reg[t1], reg[t2]);
 				break;
 			
 			case 0x1B: //R[T1] <= R[T1] && R[T2]
-				R[R[T1].value()].and( R[R[T2].value()] );
+				reg[t1] = Register.and(reg[t1], reg[t2]);
 				break;
 			
 			case 0x1C: //R[T1] <= R[T1] || R[T2]
-				R[R[T1].value()].or( R[R[T2].value()] );
+				reg[t1] = Register.or(reg[t1], reg[t2]);
 				break;
 			
 			default: //unidentified statement
-				setDebugInfoString("Unidentified opcode passed to execRRI().");
+				trace.record(Trace.CPU_UNKNOWN_OPCODE, opcode & 0xFF);
 				//Generate Trap To OS
 				break;
 		}
 	}
 	
-	/* execRII - Handles the Register-Immediate Instruction */
-	private void execRII(byte opcode){
-		readOperands( getInstructionType(opcode) );
-		
+	/* execRII - Handles the Register-Immediate Instruction, t1 being the register code and t2 the immediate */
+	private void execRII(byte opcode, short t1, short t2){
 		switch(opcode){
 			case 0x30: //R[i] <= M[AR]
-				R[R[T1].value()].copy( R[T2] );
+				reg[t1] = t2;
 				break;
-				
+			
 			case 0x31: //R[i] <= R[i] + M[AR]
-				R[R[T1].value()].add( R[T2] );
+				reg[t1] = Register.add(reg[t1], t2);
 				break;
 			
 			case 0x32: //R[i] <= R[i] - M[AR]
-				R[R[T1].value()].sub( R[T2] );
+				reg[t1] = Register.sub(reg[t1], t2);
 				break;
 			
 			case 0x33: //R[i] <= R[i] * M[AR]
-				R[R[T1].value()].mul( R[T2] );
+				reg[t1] = Register.mul(reg[t1], t2);
 				break;
 			
 			case 0x34: //R[i] <= R[i] / M[AR]
-				R[R[T1].value()].div( R[T2] );
+				reg[t1] = Register.div(reg[t1], t2);
 				break;
 			
 			case 0x35: //R[i] <= R[i] && M[AR]
-				R[R[T1].value()].and( R[T2] );
+				reg[t1] = Register.and(reg[t1], t2);
 				break;
 			
 			case 0x36: //R[i] <= R[i] || M[AR]
-				R[R[T1].value()].or( R[T2] );
+				reg[t1] = Register.or(reg[t1], t2);
 				break;
-				
+			
 			case 0x37: // CC = T2 if ZeroFlag is 0
-				if(R[FL].bitIsSet(ZERO) == 0){
-					R[CC].setValue(R[T2]);
+				if(Register.bitIsSet(reg[FL], ZERO) == 0){
+					reg[CC] = t2;
 				}
 				break;
-				
+			
 			case 0x38: // CC = T2 if ZeroFlag is 1
-				if(R[FL].bitIsSet(ZERO) == 1){
-					R[CC].setValue(R[T2]);
+				if(Register.bitIsSet(reg[FL], ZERO) == 1){
+					reg[CC] = t2;
 				}
 				break;
-				
+			
 			case 0x39: // CC = T2 if CarryFlag is 1
-				if(R[FL].bitIsSet(CARRY) == 1){
-					R[CC].setValue(R[T2]);
+				if(Register.bitIsSet(reg[FL], CARRY) == 1){
+					reg[CC] = t2;
 				}
 				break;
-				
+			
 			case 0x3A: // CC = T2 if SignFlag is 1
-				if(R[FL].bitIsSet(SIGN) == 1){
-					R[CC].setValue(R[T2]);
+				if(Register.bitIsSet(reg[FL], SIGN) == 1){
+					reg[CC] = t2;
 				}
 				break;
-				
+			
 			case 0x3B: //CC = T2
-				R[CC].setValue(R[T2]);
+				reg[CC] = t2;
 				break;
-				
+			
 			case 0x3C: //CALL
-				programStack.push(R[CC]);
-				R[CC].setValue(R[T2]);
+				programStack.push(reg[CC]);
+				reg[CC] = t2;
 				break;
-				
-			case 0x3D: //ACT - will call the ISR for service
-				//Will be implemented when the ISR in known
+			
+			case 0x3D: //ACT - system call, T1 is the service and T2 its argument
+				syscallService = t1;
+				syscallArgument = t2;
+				syscallPending = true;
 				break;
 			
 			default: //unidentified statement
-				setDebugInfoString("Unidentified opcode passed to execRII().");
+				trace.record(Trace.CPU_UNKNOWN_OPCODE, opcode & 0xFF);
 				//Generate Trap To OS
 				break;
 		}
 	}
 	
-	/* execMI - Handles the Memory Instruction */
-	private void execMI(byte opcode){
-		readOperands( getInstructionType(opcode) );
+	/* execMI - Handles the Memory Instruction, t1 being the register code and t2 the address */
+	private void execMI(byte opcode, short t1, short t2){
 		byte up, lw;
 		
 		switch(opcode){
 			case 0x51: //R[i] <= M[ M[AR] ]
-				R[R[T1].value()].setValue( M.read( R[T2].value()  ) );
+				reg[t1] = M.read(t2);
 				break;
-				
+			
 			case 0x52: //R[i] <= M[ M[AR] ]
-				up = (byte) (R[T1].value() >> 8);
-				lw = (byte) (R[T1].value() & 0xFF);
+				up = (byte) (t1 >> 8);
+				lw = (byte) (t1 & 0xFF);
 				
-				M.write(R[T2].value(), up ); //Write Upper Order 8 Bits
-				M.write((short)(R[T2].value()+1), lw ); //Write Lower Order 8 Bits
+				M.write(t2, up ); //Write Upper Order 8 Bits
+				M.write((short)(t2+1), lw ); //Write Lower Order 8 Bits
 				break;
 			
 			default: //unidentified statement
-				setDebugInfoString("Unidentified opcode passed to execMI().");
+				trace.record(Trace.CPU_UNKNOWN_OPCODE, opcode & 0xFF);
 				//Generate Trap To OS
 				break;
 		}
 	}
 	
-	/* execSOI - Handles the Single-Operand Instruction */
-	private void execSOI(byte opcode){
-		readOperands( getInstructionType(opcode) );
-		
+	/* execSOI - Handles the Single-Operand Instruction, t1 being the register code */
+	private void execSOI(byte opcode, short t1){
 		switch(opcode){
 			case 0x71: //Shift Left
-				R[R[T1].value()].shl();
+				reg[t1] = Register.shl(reg[t1]);
 				break;
-				
+			
 			case 0x72: //Shift Right
-				R[R[T1].value()].shr();
+				reg[t1] = Register.shr(reg[t1]);
 				break;
 			
 			case 0x73: //Rotate Left
-				R[R[T1].value()].rtl();
+				reg[t1] = Register.rtl(reg[t1]);
 				break;
 			
 			case 0x74: //Rotate Right
-				R[R[T1].value()].rtr();
+				reg[t1] = Register.rtr(reg[t1]);
 				break;
 			
 			case 0x75: //Increment 
-				R[R[T1].value()].inc();
+				reg[t1] = Register.inc(reg[t1]);
 				break;
 			
 			case 0x76: //Decrement
-				R[R[T1].value()].dec();
+				reg[t1] = Register.dec(reg[t1]);
 				break;
 			
 			case 0x77: //Push register into stack
-				programStack.push(R[ R[T1].value() ]);
+				programStack.push(reg[t1]);
 				break;
 			
 			case 0x78: //Pop register from stack
-				R[ R[T1].value() ].copy( programStack.pop() );
+				programStack.pop(t1);
 				break;
-				
+			
 			default: //unidentified statement
-				setDebugInfoString("Unidentified opcode passed to execSOI().");
+				trace.record(Trace.CPU_UNKNOWN_OPCODE, opcode & 0xFF);
 				//Generate Trap To OS
 				break;
 		}
@@ -364,17 +621,17 @@ public class Processor {
 	private void execNOI(short opcode){
 		switch(opcode){
 			case 0xF1:
-				R[CC].setValue(programStack.pop());
+				programStack.pop(CC);
 				break;
-				
+			
 			case 0xF2:
 				//No Operation
 				break;
-				
+			
 			case 0xF3:
 				//End of Process
 				break;
-				
+			
 			default: //unidentified statement
 				break;
 		}
@@ -390,34 +647,44 @@ public class Processor {
 	private void readOperands(short instructionType){
 		switch(instructionType){
 			case 0x1:
-				R[AR].copy( R[CC] ); // AR <= CC
-				R[T1].setValue( M.read( (short)(R[AR].value()+1) ) ); // T1 <= M[AR+1]
-				R[T2].setValue( M.read( (short)(R[AR].value()+2) ) ); // T2 <= M[AR+2]
+				reg[AR] = reg[CC]; // AR <= CC
+				reg[T1] = M.read( (short)(reg[AR]+1) ); // T1 <= M[AR+1]
+				reg[T2] = M.read( (short)(reg[AR]+2) ); // T2 <= M[AR+2]
 				break;
 			
 			case 0x3:
 			case 0x5:
-				R[AR].copy( R[CC] ); // AR <= CC
-				R[T1].setValue( M.read( (short)(R[AR].value()+1) ) ); // T1 <= M[AR+1]
-				R[T2].setValue( M.readAddr( (short)(R[AR].value()+2) ) ); // T2 <= M[AR+2]
-				//R[T2].setValue( M.read( R[T2].value() )); // T2 <= M[T2] : to resolve indirect address
+				reg[AR] = reg[CC]; // AR <= CC
+				reg[T1] = M.read( (short)(reg[AR]+1) ); // T1 <= M[AR+1]
+				reg[T2] = M.readAddr( (short)(reg[AR]+2) ); // T2 <= M[AR+2]
+				//reg[T2] = M.read( reg[T2] ); // T2 <= M[T2] : to resolve indirect address
 				break;
 			
 			case 0x7:
-				R[AR].copy( R[CC] ); // AR <= CC
-				R[T1].setValue( M.read( (short)(R[AR].value()+1) ) ); // T1 <= M[AR+1]
+				reg[AR] = reg[CC]; // AR <= CC
+				reg[T1] = M.read( (short)(reg[AR]+1) ); // T1 <= M[AR+1]
 				break;
 			
 			case 0xF: //Do nothing
 				break;
 			
-			default:
-				setDebugInfoString("Unidentified instructionType passed to readOperands().");
-				//Generate Trap to OS
+			default: //Illegal instruction, reported by dispatch()
 				break;
 		}
 	}
 	
+	/* loadOperands - Counterpart of readOperands for a cached instruction.
+	 * Leaves AR, T1 & T2 in the same state readOperands would have, but
+	 * takes the operands from the decoded record instead of the memory.
+	 * */
+	private void loadOperands(InstructionCache.DecodedFrame frame, int offset){
+		reg[AR] = reg[CC]; // AR <= CC
+		reg[T1] = frame.operand1[offset]; // T1 <= M[AR+1]
+		
+		if(getInstructionType(frame.opcode[offset]) != 0x7) //SOI leaves T2 intact
+			reg[T2] = frame.operand2[offset]; // T2 <= M[AR+2]
+	}
+	
 	/* getRegisterInfoStr
 	 * Returns the state of all the general and special
 	 * purpose register to the output.
@@ -426,7 +693,7 @@ public class Processor {
 		String regInfoStr = new String(">> CPU Registers\n");
 		
 		for(int i=0; i<MAX_REGISTERS; i++){
-			regInfoStr += String.format("R[%2h]: " + (R[i].value() & 0xFFFF) + "\t", i);
+			regInfoStr += String.format("R[%2h]: " + (reg[i] & 0xFFFF) + "\t", i);
 			
 			if(i%6 == 5){
 				regInfoStr += "\n";
@@ -437,15 +704,15 @@ public class Processor {
 	}
 	
 	public void execProgram(short addr) {
-		R[CC].setValue(addr);
+		reg[CC] = addr;
 		int instOffset = 0;
 		
 		int i=0;
-		while(M.read(R[CC].value()) != (byte)0xF3){
-			System.out.printf("%h ", M.read(R[CC].value()));
+		while(M.read(reg[CC]) != (byte)0xF3){
+			System.out.printf("%h ", M.read(reg[CC]));
 			
-			instOffset = exec(M.read( R[CC].value() ));
-			R[CC].inc( instOffset );
+			instOffset = exec(M.read( reg[CC] ));
+			reg[CC] += instOffset;
 			
 			if(i==20) break; i++;
 		}
@@ -457,18 +724,6 @@ public class Processor {
 			//Generate Trap To OS
 		}
 		
-		return R[registerCode].value();
-	}
-	
-	//Debug String Functions
-	public void setDebugInfoString(String msg){
-		debugInfoString += msg + "\n";
-	}
-	
-	public String getDebugInfoString(){
-		String tmp = new String(debugInfoString);
-		debugInfoString = ""; //clear string
-		
-		return tmp;
+		return reg[registerCode];
 	}
 }
@@ -0,0 +1,128 @@
+package CosmOS;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/* ProgramImage:
+ * A program file (.proc) read into a single ByteBuffer, with its header
+ * parsed in place. Small files are read with one bulk read of the
+ * FileChannel, files of MAP_THRESHOLD bytes and more are memory-mapped.
+ *
+ * Layout of a program file:
+ *	[0]		priority
+ *	[1]		PID hint
+ *	[2]		info byte
+ *	[3-4]	size of the data segment (DS)
+ *	[5-]	data segment
+ *	[+0]	info byte
+ *	[+1-2]	size of the code segment (CS)
+ *	[+3-]	code segment
+ * The stack segment follows the end of the file.
+ * */
+
+public class ProgramImage {
+	public static final int HEADER_SIZE = 5, CS_HEADER_SIZE = 3;
+	public static final int MAP_THRESHOLD = 1 << 16;
+	
+	private ByteBuffer data;
+	
+	/* Header */
+	private byte priority;
+	private int pidHint, dataSize, codeSize;
+	
+	private ProgramImage(ByteBuffer contents){
+		data = contents;
+	}
+	
+	/* read - Reads and parses the program file, null if it can't be read or is malformed */
+	public static ProgramImage read(String fileName){
+		FileInputStream fin;
+		
+		try {
+			fin = new FileInputStream(fileName);
+		} catch(FileNotFoundException fnfe) {
+			System.out.println(fileName + ": File Not Found.");
+			return null;
+		}
+		
+		try {
+			FileChannel channel = fin.getChannel();
+			long size = channel.size();
+			ByteBuffer contents;
+			
+			if(size >= MAP_THRESHOLD){
+				contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			} else {
+				contents = ByteBuffer.allocate((int)size);
+				while(contents.hasRemaining() && channel.read(contents) != -1);
+				contents.flip();
+			}
+			
+			return parse(fileName, contents);
+		} catch(IOException ioe) {
+			System.out.println("IOException caught @ Dispatcher load function.");
+			return null;
+		} finally {
+			try {
+				fin.close();
+			} catch(IOException ioe) {
+				//nothing left to release
+			}
+		}
+	}
+	
+	/* wrap - Parses a program that is already in memory, as for a clone */
+	public static ProgramImage wrap(byte image[]){
+		return parse("clone_process", ByteBuffer.wrap(image));
+	}
+	
+	private static ProgramImage parse(String name, ByteBuffer contents){
+		ProgramImage img = new ProgramImage(contents);
+		int length = contents.limit();
+		
+		if(length < HEADER_SIZE){
+			System.out.println(name + ": Not a program file, the header is missing.");
+			return null;
+		}
+		
+		img.priority = contents.get(0);
+		img.pidHint = contents.get(1) & 0xFF;
+		img.dataSize = contents.getShort(3) & 0xFFFF;
+		
+		int csHeader = HEADER_SIZE + img.dataSize;
+		if(csHeader + CS_HEADER_SIZE > length){
+			System.out.println(name + ": Not a program file, the data segment runs past the end of the file.");
+			return null;
+		}
+		
+		img.codeSize = contents.getShort(csHeader + 1) & 0xFFFF;
+		if(img.getCodeBase() + img.codeSize > length){
+			System.out.println(name + ": Not a program file, the code segment runs past the end of the file.");
+			return null;
+		}
+		
+		return img;
+	}
+	
+	public byte getPriority(){ return priority; }
+	
+	public int getPIDHint(){ return pidHint; }
+	
+	public int getDataSize(){ return dataSize; }
+	
+	public int getCodeSize(){ return codeSize; }
+	
+	/* getCodeBase - Offset of the first byte of code in the image */
+	public int getCodeBase(){ return HEADER_SIZE + dataSize + CS_HEADER_SIZE; }
+	
+	public int length(){ return data.limit(); }
+	
+	/* contents - Returns a new buffer over the whole image, positioned at its start */
+	public ByteBuffer contents(){
+		return data.duplicate();
+	}
+	
+	public byte get(int index){ return data.get(index); }
+}
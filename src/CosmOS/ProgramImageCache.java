@@ -0,0 +1,130 @@
+package CosmOS;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* ProgramImageCache:
+ * Keeps the parsed ProgramImages of recently loaded program files, so a
+ * program that is loaded again goes straight to frame allocation and
+ * block copy without reading or parsing the file.
+ *
+ * Images are keyed by the canonical path of the file and are only used
+ * while the modification time and size of the file are unchanged; a file
+ * that changed on disk is read again. The cache holds at most budget
+ * bytes of images and evicts the least recently used ones first. An
+ * image larger than the whole budget is not cached.
+ *
+ * get() may be called from several threads at once, as the batch load
+ * of the LongTermScheduler does; the files are read outside the lock.
+ * */
+
+public class ProgramImageCache {
+	public static final int DEFAULT_BUDGET = 1 << 20;
+	
+	/* Entry */
+	private static class Entry {
+		long lastModified, size;
+		ProgramImage image;
+	}
+	
+	private LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true); //access order
+	private long budget, bytes;
+	
+	/* Statistics */
+	private long hits, misses, evictions;
+	
+	public ProgramImageCache(long budget){
+		this.budget = budget;
+	}
+	
+	/* get - Returns the image of the program file, from the cache if the file is unchanged */
+	public ProgramImage get(String fileName){
+		File file = new File(fileName);
+		String key;
+		
+		try {
+			key = file.getCanonicalPath();
+		} catch(IOException ioe) {
+			key = file.getAbsolutePath();
+		}
+		
+		long lastModified = file.lastModified(), size = file.length();
+		Entry e;
+		
+		synchronized(this){
+			e = entries.get(key);
+			
+			if(e != null && e.lastModified == lastModified && e.size == size){
+				++hits;
+				return e.image;
+			}
+			
+			++misses;
+			if(e != null) //stale, the file changed
+				remove(key);
+		}
+		
+		ProgramImage image = ProgramImage.read(fileName);
+		if(image == null)
+			return null;
+		
+		e = new Entry();
+		e.lastModified = lastModified;
+		e.size = size;
+		e.image = image;
+		
+		synchronized(this){
+			if(image.length() > budget)
+				return image;
+			
+			remove(key); //another thread may have read the file at the same time
+			entries.put(key, e);
+			bytes += image.length();
+			evict();
+		}
+		
+		return image;
+	}
+	
+	/* setBudget - Sets the most bytes of images kept, evicting images if needed */
+	public synchronized void setBudget(long budget){
+		this.budget = budget;
+		evict();
+	}
+	
+	/* clear - Drops all the images */
+	public synchronized void clear(){
+		entries.clear();
+		bytes = 0;
+	}
+	
+	private void evict(){
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		
+		while(bytes > budget && it.hasNext()){ //least recently used first
+			bytes -= it.next().getValue().image.length();
+			it.remove();
+			++evictions;
+		}
+	}
+	
+	private void remove(String key){
+		Entry e = entries.remove(key);
+		
+		if(e != null)
+			bytes -= e.image.length();
+	}
+	
+	public synchronized long getHits(){ return hits; }
+	
+	public synchronized long getMisses(){ return misses; }
+	
+	public synchronized long getEvictions(){ return evictions; }
+	
+	public synchronized String getStatisticsStr(){
+		return String.format("Images\t: %d (%d of %d bytes)\nHits\t: %d\nMisses\t: %d\nEvictions\t: %d\n",
+				entries.size(), bytes, budget, hits, misses, evictions);
+	}
+}
@@ -1,55 +1,57 @@
 package CosmOS;
 
 public class ProgramStack {
-	private Register base, limit, counter;
+	private static final int SB=0x14, SL=0x15, SC=0x16;
+	
+	private short reg[]; //register file of the Processor
 	private Memory M;
 	
-	public ProgramStack(Register b, Register l, Register c){
-		base = b;
-		limit = l;
-		counter = c;
+	public ProgramStack(short regFile[]){
+		reg = regFile;
 	}
 	
 	public void setMemoryLink(Memory mem){ M = mem; }
 	
-	public Register pop(){
-		if(counter.value() <= base.value()){
+	/* pop - Pops the value on top of the stack into the given register.
+	 * Returns false and leaves the register intact on a stack underflow.
+	 * */
+	public boolean pop(int regCode){
+		if(reg[SC] <= reg[SB]){
 			System.out.println("Stack Underflow.");
 			//Generate Trap To OS
-			return null;
+			return false;
 		}
 		
-		short	value = (short) M.read( (short)(base.value()+counter.value()-1) ); //fetch lower order bits
-				value = (short) ( value | M.read( (short)(base.value()+counter.value()-2  << 8) ) ); //fetch upper order bits
+		short	value = (short) M.read( (short)(reg[SB]+reg[SC]-1) ); //fetch lower order bits
+				value = (short) ( value | M.read( (short)(reg[SB]+reg[SC]-2  << 8) ) ); //fetch upper order bits
 		
-		counter.dec();
-		counter.dec();
+		reg[SC] -= 2;
+		reg[regCode] = value;
 		
-		return new Register(value);
+		return true;
 	}
 	
-	public void push(Register r){
-		if(base.value()+limit.value() <= counter.value()){
+	public void push(short value){
+		if(reg[SB]+reg[SL] <= reg[SC]){
 			System.out.println("Stack Overflow.");
 			//Generate Trap To OS
 			return;
 		}
 		
-		byte	upper = (byte) (r.value() >> 8),
-				lower = (byte) (r.value() & 0x00FF);
+		byte	upper = (byte) (value >> 8),
+				lower = (byte) (value & 0x00FF);
 		
-		//System.out.printf("Pusing @ %h", counter.value());
-		M.write((short)(counter.value()), upper);
+		//System.out.printf("Pusing @ %h", reg[SC]);
+		M.write((short)(reg[SC]), upper);
 		
-		//System.out.printf("Pusing @ %h", counter.value());
-		M.write((short)(counter.value()+1), lower);
+		//System.out.printf("Pusing @ %h", reg[SC]);
+		M.write((short)(reg[SC]+1), lower);
 		
-		counter.inc();
-		counter.inc();
+		reg[SC] += 2;
 	}
 	
 	//Debug Function
 	public void printState(){
-		System.out.printf("Stack =>  Base: %d, Limit: %d, Counter: %h\n", base.value(), limit.value(), counter.value()&0xFFFF);
+		System.out.printf("Stack =>  Base: %d, Limit: %d, Counter: %h\n", reg[SB], reg[SL], reg[SC]&0xFFFF);
 	}
 }
@@ -1,54 +1,18 @@
 package CosmOS;
+
+/* Register:
+ * The register file itself is a plain short[] inside the Processor,
+ * indexed by the register codes. This class implements the operations
+ * of the instruction set on register values so that the interpreter,
+ * the compiled blocks and the stack all share the same semantics.
+ * */
 public class Register {
-	private short value = 0;
 	
-	//Constructor
-	public Register(){ value = 0; }
-	
-	public Register(short v){ value = v; }
-	
-	//Prints the register value
-	public void printValue(){
-		System.out.println(value);
-	}
-	
-	//Increment the register with the given offset
-	public void inc(int off){
-		value += off;
-	}
-	
-	//Returns the register contents
-	public short value(){
-		return value;
-	}
-	
-	/* setValue - Provides an interface to set the 
-	 * register value either by passing in a byte,
-	 * a short, or an object of type Register.
-	 * */
-	public void setValue(byte t){
-		value = (short)t;
-	}
-	
-	public void setValue(short t){
-		value = t;
-	}
-	
-	public void setValue(Register r){
-		this.value = r.value();
-	}
-	
-	/* copy - A more readable alternative to setValue.
-	 * Provides a more logically readable code when copying
-	 * a registers.
-	 * */
-	public void copy(Register r){
-		value = r.value();
-	}
+	private Register(){}
 	
 	/* Returns one if flag bit is set, 0 otherwise.
 	 * */
-	public int bitIsSet(int bitNum){
+	public static int bitIsSet(short value, int bitNum){
 		switch(bitNum){
 			case 0: return (value & 1);
 			case 1: return (value & 2);
@@ -59,47 +23,49 @@ public class Register {
 	}
 	
 	/* Instruction Set Implementation:
-	 * All the following member functions implement the
-	 * instruction set. They do exactly what their names
-	 * suggests and therefore their individual description
-	 * is omitted. 
-	 * All of them either take an object of type Register as
-	 * an argument, or take no arguments at all.
+	 * All the following functions implement the instruction
+	 * set. They do exactly what their names suggests and
+	 * therefore their individual description is omitted.
+	 * All of them take the value of the destination register
+	 * (and the source operand if any) and return the new value
+	 * of the destination register.
 	 * */
 	
-	public void add(Register r){
-		value += r.value();
+	public static short add(short value, short r){
+		return (short)(value + r);
 	}
 	
-	public void sub(Register r){
-		value -= r.value();
+	public static short sub(short value, short r){
+		return (short)(value - r);
 	}
 	
-	public void mul(Register r){
-		value *= r.value();
+	public static short mul(short value, short r){
+		return (short)(value * r);
 	}
 	
-	public void div(Register r){
-		value /= r.value();
+	public static short div(short value, short r){
+		return (short)(value / r);
 	}
 	
-	public void and(Register r){
+	public static short and(short value, short r){
 		//logical AND
+		return value;
 	}
 	
-	public void or(Register r){
+	public static short or(short value, short r){
 		//logical OR
+		return value;
 	}
 	
-	public void shl(){
-		value = (short)(value << 1);
+	public static short shl(short value){
+		return (short)(value << 1);
 	}
 	
-	public void shr(){
-		value = (short)(value >> 1);
+	public static short shr(short value){
+		return (short)(value >> 1);
 	}
 	
-	public void rtl(){
+	public static short rtl(short value){
 		short mask = 128;
 		boolean setbit = false;
 		
@@ -113,9 +79,11 @@ public class Register {
 		if(setbit){
 			value = (short)(value | mask);
 		}
+		
+		return value;
 	}
 	
-	public void rtr(){
+	public static short rtr(short value){
 		short mask = 1;
 		boolean setbit = false;
 		
@@ -129,13 +97,15 @@ public class Register {
 		if(setbit){
 			value = (short)(value | mask);
 		}
+		
+		return value;
 	}
 	
-	public void inc(){
-		++value;
+	public static short inc(short value){
+		return (short)(value + 1);
 	}
 	
-	public void dec(){
-		--value;
+	public static short dec(short value){
+		return (short)(value - 1);
 	}
 }
@@ -0,0 +1,45 @@
+package CosmOS;
+import java.util.LinkedList;
+
+/* RoundRobinPolicy:
+ * All processes share a single FIFO queue, whatever their priority,
+ * and each one runs for one quantum before it goes to the back. Every
+ * instruction takes two cycles of the time slice.
+ * */
+
+public class RoundRobinPolicy implements SchedulingPolicy {
+	private RunQueue readyQ = new RunQueue();
+	private int quantum;
+	
+	public RoundRobinPolicy(int timeSlice){
+		setTimeSlice(timeSlice);
+	}
+	
+	public void enqueue(PCB p){ readyQ.add(p, 0); }
+	
+	public PCB pickNext(){ return readyQ.poll(); }
+	
+	public int quantumOf(PCB p){ return quantum; }
+	
+	public void onQuantumExpired(PCB p, int executed){ readyQ.add(p, 0); }
+	
+	public void onYield(PCB p, int executed){ readyQ.add(p, 0); }
+	
+	public void onBlock(PCB p){ readyQ.remove(p); }
+	
+	public void onWake(PCB p){ readyQ.add(p, 0); }
+	
+	public boolean remove(PCB p){ return readyQ.remove(p); }
+	
+	public void setTimeSlice(int cycles){
+		quantum = Math.max(1, (cycles+1)/2);
+	}
+	
+	public boolean isEmpty(){ return readyQ.isEmpty(); }
+	
+	public int size(){ return readyQ.size(); }
+	
+	public LinkedList<PCB> toList(){ return readyQ.toList(); }
+	
+	public String getName(){ return "rr"; }
+}
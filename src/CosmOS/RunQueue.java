@@ -0,0 +1,136 @@
+package CosmOS;
+import java.util.LinkedList;
+
+/* RunQueue:
+ * A queue of PCBs with one FIFO list per level (0 - 31) and a 32 bit
+ * occupancy bitmap, bit n being set if list n is not empty. The PCB
+ * at the front of the lowest non-empty level is found with a single
+ * numberOfTrailingZeros, so adding, polling and removing a process
+ * all take constant time however many processes are queued.
+ *
+ * The level of a process is given when it is added and cached in its
+ * node, so the queue never reads the priority from the PCB in memory.
+ * Each PCB links to its node, which makes contains() and remove() O(1)
+ * as well; a PCB can only be in one RunQueue at a time.
+ * */
+
+public class RunQueue {
+	public static final int MAX_LEVELS = 32;
+	
+	/* Node - The entry of a single PCB in the queue */
+	static class Node {
+		PCB pcb;
+		int level;
+		Node prev, next;
+		RunQueue queue;
+	}
+	
+	private Node head[] = new Node[MAX_LEVELS], tail[] = new Node[MAX_LEVELS];
+	private int bitmap, size;
+	
+	/* add - Appends the PCB at the back of the list of the given level */
+	public void add(PCB p, int level){
+		Node node = new Node();
+		node.pcb = p;
+		node.level = level;
+		node.queue = this;
+		
+		if(tail[level] == null){
+			head[level] = node;
+			bitmap |= 1 << level;
+		} else {
+			tail[level].next = node;
+			node.prev = tail[level];
+		}
+		
+		tail[level] = node;
+		p.queueNode = node;
+		++size;
+	}
+	
+	/* highestLevel - Returns the lowest numbered non-empty level, -1 if the queue is empty */
+	public int highestLevel(){
+		return bitmap == 0 ? -1 : Integer.numberOfTrailingZeros(bitmap);
+	}
+	
+	/* hasLevelBelow - Returns true if a process is queued at a level below the given one */
+	public boolean hasLevelBelow(int level){
+		return (bitmap & ((1 << level) - 1)) != 0;
+	}
+	
+	/* peek - Returns the PCB at the front of the highest level without removing it */
+	public PCB peek(){
+		return bitmap == 0 ? null : head[Integer.numberOfTrailingZeros(bitmap)].pcb;
+	}
+	
+	/* peekLevel - Returns the PCB at the front of the given level, null if the level is empty */
+	public PCB peekLevel(int level){
+		return head[level] == null ? null : head[level].pcb;
+	}
+	
+	/* poll - Removes and returns the PCB at the front of the highest level, null if empty */
+	public PCB poll(){
+		if(bitmap == 0)
+			return null;
+		
+		PCB p = head[Integer.numberOfTrailingZeros(bitmap)].pcb;
+		remove(p);
+		
+		return p;
+	}
+	
+	public boolean contains(PCB p){
+		return p != null && p.queueNode != null && p.queueNode.queue == this;
+	}
+	
+	/* remove - Removes the PCB from the queue, false if it wasn't queued here */
+	public boolean remove(PCB p){
+		if(!contains(p))
+			return false;
+		
+		Node node = p.queueNode;
+		int level = node.level;
+		
+		if(node.prev == null)
+			head[level] = node.next;
+		else
+			node.prev.next = node.next;
+		
+		if(node.next == null)
+			tail[level] = node.prev;
+		else
+			node.next.prev = node.prev;
+		
+		if(head[level] == null)
+			bitmap &= ~(1 << level);
+		
+		p.queueNode = null;
+		--size;
+		return true;
+	}
+	
+	/* levelOf - Returns the level the PCB was queued at, -1 if it isn't queued here */
+	public int levelOf(PCB p){
+		return contains(p) ? p.queueNode.level : -1;
+	}
+	
+	public int size(){ return size; }
+	
+	public boolean isEmpty(){ return size == 0; }
+	
+	/* toList - Returns the PCBs queued at levels fromLevel to toLevel, in the order they would run */
+	public LinkedList<PCB> toList(int fromLevel, int toLevel){
+		LinkedList<PCB> list = new LinkedList<PCB>();
+		
+		for(int level = fromLevel; level <= toLevel; level++){
+			for(Node node = head[level]; node != null; node = node.next)
+				list.add(node.pcb);
+		}
+		
+		return list;
+	}
+	
+	public LinkedList<PCB> toList(){
+		return toList(0, MAX_LEVELS-1);
+	}
+}
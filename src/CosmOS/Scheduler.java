@@ -36,12 +36,37 @@ public class Scheduler{
 	
 	private int timeSlice = 8;
 	
-	private ArrayList<PCB> readyQlow;
-	private ArrayList<PCB> readyQhigh;
-	private ArrayList<PCB> blockedProcQ;
+	/* policy - Orders the ready processes, see SchedulingPolicy */
+	private SchedulingPolicy policy;
+	private RunQueue blockedProcQ;
 	
 	public static Queue<Integer> freeKernelFrames = new LinkedList<Integer>();
 	
+	/* processTable - PCB and state of every process, indexed by PID */
+	ProcessTable processTable;
+	
+	/* longTermScheduler - Admits the waiting jobs when a process frees its memory */
+	private LongTermScheduler longTermScheduler;
+	
+	/* metrics - Waiting, turnaround and response times of the processes */
+	public SchedulerMetrics metrics;
+	
+	/* System Calls:
+	 * Dispatch table of the services a process requests with ACT. The
+	 * processes blocked by them are woken up by the sleep timers and by
+	 * the events of the devices, which serve their requests in FIFO order.
+	 * */
+	private SystemCall syscalls[] = new SystemCall[SystemCall.MAX_SYSCALLS];
+	private TimingWheel timers = new TimingWheel();
+	private EventQueue events = new EventQueue();
+	
+	public static final int	MAX_DEVICES = 8,
+							DEFAULT_DEVICE_LATENCY = 200;
+	private Device devices[] = new Device[MAX_DEVICES];
+	
+	/* idleCycles - Cycles skipped because no process was ready */
+	private long idleCycles;
+	
 	Processor cpu;
 	Memory M;
 	
@@ -49,18 +74,29 @@ public class Scheduler{
 	private JTextArea debugConsole;
 	private boolean debugMode = false;
 	
+	/* sliceLength - Instructions run in the last time slice */
+	private int sliceLength;
+	
 	/* Constructor */
 	public Scheduler(Processor p, Memory ram){
-		readyQlow = new ArrayList<PCB>();
-		readyQhigh = new ArrayList<PCB>();
-		blockedProcQ = new ArrayList<PCB>();
+		policy = createPolicy(System.getProperty("cosmos.scheduler", "priority"), p, timeSlice);
+		blockedProcQ = new RunQueue();
+		processTable = new ProcessTable();
 		
-		//Prepare Free Kernel FrameList
+		//Prepare Free Kernel FrameList, it is static so drop what an earlier Scheduler left
+		freeKernelFrames.clear();
 		for(int i=0; i<MAX_KERNEL_FRAMES; i++)
 			freeKernelFrames.add(i);
 		
 		cpu = p;
 		M = ram;
+		
+		metrics = new SchedulerMetrics(cpu, M);
+		
+		for(int i=0; i<MAX_DEVICES; i++)
+			devices[i] = new Device(DEFAULT_DEVICE_LATENCY);
+		
+		registerSystemCalls();
 	}
 	
 	/* pushIntoQueue
@@ -72,15 +108,58 @@ public class Scheduler{
 	public void pushIntoQueue(PCB currPCB, byte priority){
 		currPCB.setWaitingTime(cpu.clock()); //Set Internal Clock
 		
-		if(priority < 16)
-			readyQhigh.add(currPCB);
-		else
-			readyQlow.add(currPCB);
+		policy.enqueue(currPCB);
+		processTable.add(currPCB.getPID(), currPCB, ProcessTable.READY);
+		cpu.accounting.start(currPCB.getPID(), cpu.cycles());
+		metrics.onArrival(currPCB);
+	}
+	
+	public void setLongTermScheduler(LongTermScheduler lts){
+		longTermScheduler = lts;
 	}
 	
 	/* setTimeSlice */
 	public void setTimeSlice(int arg){
 		timeSlice = arg;
+		policy.setTimeSlice(arg);
+	}
+	
+	/* createPolicy
+	 * Returns the scheduling policy with the given name: fcfs, sjf, rr,
+	 * priority, mlfq or cfs. The policy of a deployment is picked with
+	 * the cosmos.scheduler system property; priority is the default.
+	 * */
+	public static SchedulingPolicy createPolicy(String name, Processor cpu, int timeSlice){
+		if(name.equals("fcfs"))
+			return new FCFSPolicy();
+		else if(name.equals("sjf"))
+			return new ShortestJobFirstPolicy();
+		else if(name.equals("rr"))
+			return new RoundRobinPolicy(timeSlice);
+		else if(name.equals("mlfq"))
+			return new MultilevelFeedbackQueue(cpu);
+		else if(name.equals("cfs"))
+			return new FairSharePolicy();
+		
+		if(!name.equals("priority"))
+			System.out.println("Scheduler: Unknown policy " + name + ", using priority scheduling.");
+		
+		return new PriorityPolicy(timeSlice);
+	}
+	
+	/* setSchedulingPolicy - Replaces the policy, processes that are ready are moved over */
+	public void setSchedulingPolicy(SchedulingPolicy newPolicy){
+		PCB p;
+		
+		while((p = policy.pickNext()) != null)
+			newPolicy.enqueue(p);
+		
+		newPolicy.setTimeSlice(timeSlice);
+		policy = newPolicy;
+	}
+	
+	public SchedulingPolicy getSchedulingPolicy(){
+		return policy;
 	}
 	
 	/* Debug Opeations */
@@ -90,23 +169,27 @@ public class Scheduler{
 	
 	public void enableDebugging(boolean flag){
 		debugMode = flag;
+		cpu.trace.setLevel(flag ? Trace.DEBUG : Trace.ERROR);
+	}
+	
+	/* getCPUTime - Cycles the process has run, exact unlike PCB.getExecutionTime */
+	public long getCPUTime(int pid){
+		return cpu.accounting.getCPUTime(pid);
+	}
+	
+	/* getWaitingTime - Cycles since its arrival that the process was not running */
+	public long getWaitingTime(int pid){
+		return cpu.accounting.getWaitingTime(pid, cpu.cycles());
+	}
+	
+	/* getCycles - The 64 bit cycle counter of the Processor */
+	public long getCycles(){
+		return cpu.cycles();
 	}
 	
 	/* getPCB */
 	public PCB getPCB(int pid){
-		for(int i=0; i<readyQhigh.size(); i++)
-			if(readyQhigh.get(i).getPID() == pid) return readyQhigh.get(i);
-		
-		for(int i=0; i<readyQlow.size(); i++)
-			if(readyQlow.get(i).getPID() == pid) return readyQlow.get(i);
-		
-		for(int i=0; i<blockedProcQ.size(); i++)
-			if(blockedProcQ.get(i).getPID() == pid) return blockedProcQ.get(i);
-		
-		if(cpu.currentProcess != null && cpu.currentProcess.getPID() == pid) return cpu.currentProcess;
-		
-		//If all else fails
-		return null;
+		return processTable.get(pid);
 	}
 	
 	/* blockProcess
@@ -115,17 +198,13 @@ public class Scheduler{
 	 */
 	public boolean blockProcess(int procID){
 		PCB tmpPCB = getPCB(procID);
-
+		
 		if(blockedProcQ.contains(tmpPCB)){
 			return false;
 		} else {
-			blockedProcQ.add(tmpPCB);
-			
-			if(readyQhigh.contains(tmpPCB)){
-				readyQhigh.remove(tmpPCB);
-			} else { //readyQlow has it
-				readyQlow.remove(tmpPCB);
-			}
+			policy.onBlock(tmpPCB);
+			blockedProcQ.add(tmpPCB, 0); //blocked processes are kept in a single list
+			processTable.setState(procID, ProcessTable.BLOCKED);
 			
 			return true;
 		}
@@ -139,15 +218,13 @@ public class Scheduler{
 		PCB tmpPCB = getPCB(procID);
 		
 		if(blockedProcQ.contains(tmpPCB)){
-			//Add to ready Q
-			if(tmpPCB.getPriority() < 16)
-				readyQhigh.add(tmpPCB);
-			else
-				readyQlow.add(tmpPCB);
-			
 			//Remove from blocked Q
 			blockedProcQ.remove(tmpPCB);
 			
+			//Add to ready Q
+			policy.onWake(tmpPCB);
+			processTable.setState(procID, ProcessTable.READY);
+			
 			return true;
 		} else { //do nothing
 			return false;
@@ -161,80 +238,236 @@ public class Scheduler{
 	 * defined by the algorithm.
 	 * */
 	public void run(){
-		while(readyQhigh.size()+readyQlow.size() != 0){
-			processHighPriorityQueue();
-			processLowPriorityQueue();
-		}
-	}
-	
-	private void processHighPriorityQueue(){
 		PCB currPCB;
 		
-		Collections.sort(readyQhigh);
-		while(readyQhigh.size() != 0){
-			currPCB = readyQhigh.get(0); readyQhigh.remove(0); //Pop PCB from Queue
-			
-			cpu.setDebugInfoString(" ***************** Switching Context.");
-			cpu.switchProcessTo(currPCB);
+		while(true){
+			wakeUpProcesses();
 			
-			/* Execute all instruction unless F3 instruction is encountered */
-			while(cpu.execNextIntruction()){
-				cpu.setDebugInfoString("\n\nExecuting Instruction for " + currPCB.getPID() + " with priority " + currPCB.getPriority());
+			if((currPCB = policy.pickNext()) == null){
+				long next = nextEventTime();
+				
+				if(next == -1) //nothing ready and nobody to wake up
+					break;
 				
-				//Send Debug Into String To Console if debugging is on
-				if(debugMode == true)
-					debugConsole.append(cpu.getDebugInfoString());
+				if(next > cpu.cycles()){ //fast-forward to the next event
+					idleCycles += next - cpu.cycles();
+					cpu.idle(next - cpu.cycles());
+				}
+				continue;
 			}
 			
-			killProcess(currPCB.getPID());
-			//cleanUp(currPCB);
+			cpu.trace.record(Trace.SCHED_CONTEXT_SWITCH, currPCB.getPID());
+			cpu.switchProcessTo(currPCB);
+			processTable.setState(currPCB.getPID(), ProcessTable.RUNNING);
+			metrics.onDispatch(currPCB);
+			
+			/* Execute until the process is done, makes a system call or the timer preempts it */
+			int stop = runTimeSlice(currPCB, policy.quantumOf(currPCB));
+			
+			if(stop == Processor.STOP_TIMER){
+				policy.onQuantumExpired(currPCB, sliceLength);
+				processTable.setState(currPCB.getPID(), ProcessTable.READY);
+			} else if(stop == Processor.STOP_SYSCALL){
+				systemCall(currPCB);
+			} else {
+				killProcess(currPCB.getPID());
+				//cleanUp(currPCB);
+			}
 		}
 	}
 	
-	private void processLowPriorityQueue(){
-		PCB currPCB;
-		boolean done = false;
+	/* runProcess
+	 * Runs only the process with the given PID, handling its system calls
+	 * as run() does, until it ends, blocks or has run maxInstructions
+	 * instructions. Returns true if the process ended. A process that
+	 * blocks or hits the limit is left to run().
+	 * */
+	public boolean runProcess(int procID, int maxInstructions){
+		PCB currPCB = getPCB(procID);
 		
-		while(readyQlow.size() != 0){
-			
-			/* Stop execution of lower priority Queue if
-			 * processes are available in the higher
-			 * priority queue
-			 * */
-			if(readyQhigh.size() > 0)
-				return;
-			
-			currPCB = readyQlow.get(0); readyQlow.remove(0); //Pop PCB from Queue
+		if(currPCB == null || blockedProcQ.contains(currPCB))
+			return false;
+		
+		while(maxInstructions > 0){
+			policy.remove(currPCB); //taken off the ready queue while it runs
 			
-			cpu.setDebugInfoString(" ***************** Switching Context.");
+			cpu.trace.record(Trace.SCHED_CONTEXT_SWITCH, currPCB.getPID());
 			cpu.switchProcessTo(currPCB);
+			processTable.setState(procID, ProcessTable.RUNNING);
+			metrics.onDispatch(currPCB);
 			
-			for(int numCycles = 0; numCycles < timeSlice; numCycles+=2){ //RoundRobin Algorithm
-				cpu.setDebugInfoString("\n#! Executing Instruction for PID " + currPCB.getPID() + " with priority " + currPCB.getPriority());
-				done = cpu.execNextIntruction();
-				
-				//Send Debug Into String To Console if debugging is on
-				if(debugMode == true)
-					debugConsole.append(cpu.getDebugInfoString());
+			int stop = runTimeSlice(currPCB, maxInstructions);
+			maxInstructions -= sliceLength;
+			
+			if(stop == Processor.STOP_TIMER){
+				break;
+			} else if(stop == Processor.STOP_SYSCALL){
+				systemCall(currPCB);
 				
-				if(done){ //if process is done
-					/* Q. Why does cleanUp logic leaves the last process untouched in one of the queues? */
-					
-					killProcess(currPCB.getPID());
-					//cleanUp(currPCB);
-					break; //no need to give more time to current process
+				if(getPCB(procID) != currPCB) //exited
+					return true;
+				if(blockedProcQ.contains(currPCB))
+					return false;
+			} else {
+				killProcess(procID);
+				return true;
+			}
+		}
+		
+		//Out of instructions, back to the ready queue (once, even if it just yielded)
+		policy.remove(currPCB);
+		policy.onYield(currPCB, sliceLength);
+		processTable.setState(procID, ProcessTable.READY);
+		
+		return false;
+	}
+	
+	/* wakeUpProcesses - Unblocks the processes whose timers expired or whose device requests are done */
+	private void wakeUpProcesses(){
+		ArrayList<PCB> expired = timers.advance(cpu.cycles());
+		for(int i=0; i<expired.size(); i++)
+			wakeUp(expired.get(i));
+		
+		EventQueue.Event e;
+		while((e = events.pollDue(cpu.cycles())) != null){
+			if(e.type == EventQueue.IO_DONE && e.pcb != null)
+				wakeUp(e.pcb);
+		}
+	}
+	
+	private void wakeUp(PCB p){
+		if(getPCB(p.getPID()) != p) //killed in the meantime
+			return;
+		
+		cpu.trace.record(Trace.SCHED_WAKEUP, p.getPID());
+		unblockProcess(p.getPID());
+	}
+	
+	/* nextEventTime - Returns the cycle of the next timer or device event, -1 if there is none; both are cached peeks */
+	private long nextEventTime(){
+		long timer = timers.nextDeadline(), event = events.peekTime();
+		
+		if(timer == -1 || event == -1)
+			return Math.max(timer, event);
+		
+		return Math.min(timer, event);
+	}
+	
+	/* getIdleCycles - Cycles the CPU skipped because every process was blocked */
+	public long getIdleCycles(){
+		return idleCycles;
+	}
+	
+	/* systemCall
+	 * Runs the service the process requested with ACT. A process that
+	 * asks for a service that does not exist is killed.
+	 * */
+	private void systemCall(PCB currPCB){
+		int service = cpu.getSyscallService(), argument = cpu.getSyscallArgument();
+		
+		cpu.trace.record(Trace.SCHED_SYSCALL, service, argument, currPCB.getPID());
+		
+		if(service < 0 || service >= SystemCall.MAX_SYSCALLS || syscalls[service] == null){
+			System.out.println("Scheduler: Unknown system call " + service + " from process " + currPCB.getPID() + ".");
+			//Generate Trap To OS
+			killProcess(currPCB.getPID());
+			return;
+		}
+		
+		syscalls[service].call(currPCB, argument);
+	}
+	
+	/* registerSystemCall - Adds or replaces the service with the given number */
+	public void registerSystemCall(int service, SystemCall handler){
+		if(service < 0 || service >= SystemCall.MAX_SYSCALLS){
+			System.out.println("Scheduler: Invalid system call number " + service + ".");
+			//Generate Trap To OS
+			return;
+		}
+		
+		syscalls[service] = handler;
+	}
+	
+	/* setDeviceLatency - Cycles a request to the device takes to complete */
+	public void setDeviceLatency(int device, int cycles){
+		devices[device].setLatency(cycles);
+	}
+	
+	public Device getDevice(int device){
+		return devices[device];
+	}
+	
+	/* sleep - Blocks the process until the given cycle */
+	private void sleep(PCB p, long deadline){
+		blockProcess(p.getPID());
+		timers.schedule(p, deadline);
+	}
+	
+	/* registerSystemCalls - Fills the dispatch table with the services of the OS */
+	private void registerSystemCalls(){
+		registerSystemCall(SystemCall.SYS_EXIT, new SystemCall(){
+			public void call(PCB p, int argument){
+				killProcess(p.getPID());
+			}
+		});
+		
+		registerSystemCall(SystemCall.SYS_YIELD, new SystemCall(){
+			public void call(PCB p, int argument){
+				policy.onYield(p, sliceLength);
+				processTable.setState(p.getPID(), ProcessTable.READY);
+			}
+		});
+		
+		registerSystemCall(SystemCall.SYS_SLEEP, new SystemCall(){
+			public void call(PCB p, int argument){
+				sleep(p, cpu.cycles() + (argument & 0xFFFF));
+			}
+		});
+		
+		registerSystemCall(SystemCall.SYS_WAIT, new SystemCall(){
+			public void call(PCB p, int argument){
+				if(argument < 0 || argument >= MAX_DEVICES){
+					System.out.println("Scheduler: Process " + p.getPID() + " waits on invalid device " + argument + ".");
+					//Generate Trap To OS
+					policy.onYield(p, sliceLength);
+					processTable.setState(p.getPID(), ProcessTable.READY);
+					return;
 				}
+				
+				blockProcess(p.getPID());
+				events.post(devices[argument].request(cpu.cycles()), EventQueue.IO_DONE, p, argument);
 			}
+		});
+	}
+	
+	/* runTimeSlice
+	 * Runs the current process until it halts, traps or the timer
+	 * interrupt fires after the given number of instructions (0 runs it
+	 * to completion). Returns the STOP_ code of the Processor, STOP_TIMER
+	 * if the process was preempted, STOP_SYSCALL if it made a system call.
+	 * The instructions run are left in sliceLength.
+	 * */
+	private int runTimeSlice(PCB currPCB, int instructions){
+		int stop = Processor.STOP_QUANTUM;
+		
+		cpu.setTimer(instructions);
+		sliceLength = 0;
+		
+		while(stop == Processor.STOP_QUANTUM){
+			cpu.trace.record(Trace.SCHED_EXECUTE, currPCB.getPID(), currPCB.getPriority());
+			
+			//Run the whole slice at once, single instructions in debug mode
+			stop = cpu.runQuantum( debugMode ? 1 : Integer.MAX_VALUE );
+			sliceLength += cpu.lastQuantumLength();
 			
-			/* Only add PCB to the queue again if the process is not done. No further
-			 * action is required otherwise since the JVM garbage collector will automatically
-			 * recycle the unreferenced object.
-			 * */
-			if(!done)
-				readyQlow.add(currPCB);
-			else
-				done = false;
+			//Send Debug Into String To Console if debugging is on
+			if(debugMode == true)
+				debugConsole.append(cpu.trace.drain());
 		}
+		
+		cpu.setTimer(0);
+		cpu.acknowledgeTimerInterrupt();
+		return stop;
 	}
 	
 	/* cleanUp
@@ -242,16 +475,26 @@ public class Scheduler{
 	 * allocated to the process in the user and kernel space.
 	 * */
 	private void cleanUp(PCB currPCB){
+		metrics.onCompletion(currPCB); //Turnaround and Waiting Time of the process
+		
 		//Removing Process From Memory after Completion
-		for(int i=0; i<currPCB.getPageTableSize(); i++){
-			M.freeFrame(currPCB.getPageTableEntry(i));
+		if(M.pager != null){ //the pages may be in memory or in the swap file
+			M.pager.release(currPCB);
+		} else {
+			int frameList[] = new int[currPCB.getPageTableSize()];
+			for(int i=0; i<frameList.length; i++){
+				frameList[i] = currPCB.getPageFrame(i);
+			}
+			M.frames.freeFrames(frameList);
 		}
 		
 		//Free Space Taken Up by the PCB
 		freeKernelFrames.add(currPCB.getBaseFrame());
+		processTable.remove(currPCB.getPID());
 		
-		//Temp - Waiting Time Calculation
-		/* Total Waiting Time = CPU.clock() - PCB.getWaitingTime - PCB.getExecutionTime => write to file */
+		//Admit the jobs waiting for the memory that was freed
+		if(longTermScheduler != null)
+			longTermScheduler.admitJobs();
 	}
 	
 	/* killProcess
@@ -261,18 +504,18 @@ public class Scheduler{
 	public boolean killProcess(int procID){
 		PCB victimPCB = getPCB(procID);
 		
-		if(cpu.currentProcess != null && cpu.currentProcess.getPID() == victimPCB.getPID()){
+		if(victimPCB == null)
+			return false;
+		
+		if(cpu.currentProcess != null && cpu.currentProcess.getPID() == victimPCB.getPID())
 			cpu.currentProcess = null; //remove from cpu
-			
-			/* else cause removed and added to if clause to provide added support to exec one process commands */
-			if(readyQlow.contains(victimPCB))
-				readyQlow.remove(victimPCB);
-			else if(readyQhigh.contains(victimPCB))
-				readyQhigh.remove(victimPCB);
-			else if(blockedProcQ.contains(victimPCB))
-				blockedProcQ.remove(victimPCB);
-		}
 		
+		//A ready or blocked process must leave its queue before its PID and frames are reused
+		if(!policy.remove(victimPCB))
+			blockedProcQ.remove(victimPCB);
+		
+		timers.cancel(victimPCB);
+		events.cancel(victimPCB);
 		cleanUp(victimPCB);
 		
 		return true;
@@ -288,14 +531,8 @@ public class Scheduler{
 		if(cpu.currentProcess != null)
 			procList.add(cpu.currentProcess);
 		
-		for(int i=0; i<readyQhigh.size(); i++)
-			procList.add(readyQhigh.get(i));
-		
-		for(int i=0; i<readyQlow.size(); i++)
-			procList.add(readyQlow.get(i));
-		
-		for(int i=0; i<blockedProcQ.size(); i++)
-			procList.add(blockedProcQ.get(i));
+		procList.addAll(policy.toList());
+		procList.addAll(blockedProcQ.toList());
 		
 		return procList;
 	}
@@ -306,22 +543,17 @@ public class Scheduler{
 	 */
 	public String getProcessListStr(String arg){
 		String	resultList = new String(),
-				readyQHighStr = new String(),
-				readyQLowStr = new String(),
+				readyQStr = new String(),
 				blockedQStr = new String(),
 				runningQStr = new String();
 		
 		//Preparing List
-		for(int i=0; i<readyQhigh.size(); i++){ //readyQHigh
-			readyQHighStr += readyQhigh.get(i).getPcbInfoString();
-		}
-		
-		for(int i=0; i<readyQlow.size(); i++){ //readyQLow
-			readyQLowStr += readyQlow.get(i).getPcbInfoString();
+		for(PCB p : policy.toList()){ //readyQ, in the order the policy runs them
+			readyQStr += p.getPcbInfoString();
 		}
 		
-		for(int i=0; i<blockedProcQ.size(); i++){ //blockedProcQ
-			blockedQStr += blockedProcQ.get(i).getPcbInfoString();
+		for(PCB p : blockedProcQ.toList()){ //blockedProcQ
+			blockedQStr += p.getPcbInfoString();
 		}
 		
 		if(cpu.currentProcess != null)
@@ -331,11 +563,11 @@ public class Scheduler{
 		resultList = "ID\tPriority\tSize\n";
 		
 		if(arg == "-a"){ //all
-			resultList += readyQHighStr + readyQLowStr + blockedQStr;
+			resultList += readyQStr + blockedQStr;
 		} else if(arg == "-b"){ //blocked
 			resultList += blockedQStr;
 		} else if(arg == "-r"){ //ready
-			resultList += readyQHighStr + readyQLowStr;
+			resultList += readyQStr;
 		} else if(arg == "-e"){ //running
 			resultList += runningQStr;
 		}
@@ -0,0 +1,281 @@
+package CosmOS;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/* SchedulerMetrics:
+ * Measures how well the processes are scheduled. For every process
+ * the Scheduler reports the arrival, every dispatch and the completion;
+ * the CPU time is taken from Processor.accounting. The record of a completed
+ * process is kept for the summary and, if an output file is set,
+ * written to it as a CSV line or a JSON object (one per line).
+ *
+ * Times are in cycles of the 64 bit cycle counter of the Processor.
+ *
+ *	turnaround	= completion - arrival
+ *	waiting		= turnaround - cpu time
+ *	response	= first run - arrival
+ *
+ * The summary gives the mean, p50 and p99 of each, for all processes
+ * and per priority class, and the throughput in processes per 1000
+ * cycles.
+ *
+ * With demand paging, the page faults, evictions and dirty write-backs
+ * of the process are taken from the Pager, and the fault rate is the
+ * number of page faults per 1000 cycles of CPU time.
+ * */
+
+public class SchedulerMetrics {
+	/* Priority Classes */
+	public static final int	CLASS_HIGH = 0, CLASS_LOW = 1, MAX_CLASSES = 2;
+	private static final String CLASS_NAME[] = { "high", "low" };
+	
+	/* ProcessRecord - The measurements of a completed process */
+	public static class ProcessRecord {
+		public int pid, priority, contextSwitches;
+		public long arrival, firstRun, completion, cpuTime;
+		public long pageFaults, evictions, writeBacks;
+		
+		public long turnaround(){ return completion - arrival; }
+		public long waiting(){ return turnaround() - cpuTime; }
+		public long response(){ return firstRun - arrival; }
+		public double faultRate(){ return cpuTime == 0 ? 0.0 : 1000.0 * pageFaults / cpuTime; }
+		
+		public int priorityClass(){
+			return priority < PriorityPolicy.HIGH_PRIORITY_LEVELS ? CLASS_HIGH : CLASS_LOW;
+		}
+		
+		public String toCSV(){
+			return String.format("%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%.3f",
+					pid, priority, arrival, firstRun, completion, cpuTime, contextSwitches,
+					turnaround(), waiting(), response(), pageFaults, evictions, writeBacks, faultRate());
+		}
+		
+		public String toJSON(){
+			return String.format("{\"pid\":%d,\"priority\":%d,\"arrival\":%d,\"firstRun\":%d,\"completion\":%d," +
+					"\"cpuTime\":%d,\"contextSwitches\":%d,\"turnaround\":%d,\"waiting\":%d,\"response\":%d," +
+					"\"pageFaults\":%d,\"evictions\":%d,\"writeBacks\":%d,\"faultRate\":%.3f}",
+					pid, priority, arrival, firstRun, completion, cpuTime, contextSwitches,
+					turnaround(), waiting(), response(), pageFaults, evictions, writeBacks, faultRate());
+		}
+	}
+	
+	public static final String CSV_HEADER = "pid,priority,arrival,firstRun,completion,cpuTime,contextSwitches,turnaround,waiting,response," +
+											"pageFaults,evictions,writeBacks,faultRate";
+	
+	/* Live Processes, indexed by PID */
+	private long firstRun[] = new long[ProcessTable.MAX_PIDS];
+	private int contextSwitches[] = new int[ProcessTable.MAX_PIDS];
+	
+	private ArrayList<ProcessRecord> completed = new ArrayList<ProcessRecord>();
+	private long runStart = -1, runEnd;
+	
+	private PrintWriter csvOut, jsonOut;
+	
+	private Processor cpu;
+	private Memory M;
+	
+	public SchedulerMetrics(Processor p, Memory mem){
+		cpu = p;
+		M = mem;
+	}
+	
+	/* Events */
+	
+	public void onArrival(PCB p){
+		int pid = p.getPID();
+		
+		firstRun[pid] = -1;
+		contextSwitches[pid] = 0;
+		
+		if(runStart == -1)
+			runStart = cpu.cycles();
+	}
+	
+	public void onDispatch(PCB p){
+		int pid = p.getPID();
+		
+		if(firstRun[pid] == -1)
+			firstRun[pid] = cpu.cycles();
+		
+		++contextSwitches[pid];
+	}
+	
+	public void onCompletion(PCB p){
+		int pid = p.getPID();
+		ProcessRecord r = new ProcessRecord();
+		
+		r.pid = pid;
+		r.priority = p.getPriority();
+		r.arrival = cpu.accounting.getArrival(pid);
+		r.completion = cpu.cycles();
+		r.firstRun = (firstRun[pid] == -1) ? r.completion : firstRun[pid]; //killed before it ever ran
+		r.cpuTime = cpu.accounting.getCPUTime(pid);
+		r.contextSwitches = contextSwitches[pid];
+		
+		if(M.pager != null){ //read before the Pager releases the process
+			r.pageFaults = M.pager.getPageFaults(pid);
+			r.evictions = M.pager.getEvictions(pid);
+			r.writeBacks = M.pager.getWriteBacks(pid);
+		}
+		
+		completed.add(r);
+		runEnd = r.completion;
+		
+		if(csvOut != null){
+			csvOut.println(r.toCSV());
+			csvOut.flush();
+		}
+		
+		if(jsonOut != null){
+			jsonOut.println(r.toJSON());
+			jsonOut.flush();
+		}
+	}
+	
+	/* Output Files */
+	
+	/* setCSVOutput - Appends the record of every completed process to the file, null to stop.
+	 * The header is only written to a new or empty file.
+	 * */
+	public boolean setCSVOutput(String path){
+		if(csvOut != null)
+			csvOut.close();
+		
+		boolean newFile = path != null && new File(path).length() == 0; //0 if it does not exist
+		csvOut = openOutput(path);
+		
+		if(csvOut != null && newFile){
+			csvOut.println(CSV_HEADER);
+			csvOut.flush();
+		}
+		
+		return path == null || csvOut != null;
+	}
+	
+	/* setJSONOutput - Appends the record of every completed process to the file as a JSON line, null to stop */
+	public boolean setJSONOutput(String path){
+		if(jsonOut != null)
+			jsonOut.close();
+		
+		jsonOut = openOutput(path);
+		
+		return path == null || jsonOut != null;
+	}
+	
+	private PrintWriter openOutput(String path){
+		if(path == null)
+			return null;
+		
+		try {
+			return new PrintWriter(new FileWriter(path, true));
+		} catch (IOException e) {
+			System.out.println("Scheduler Metrics: Unable to open " + path + " for writing.");
+			//Generate Trap To OS
+			return null;
+		}
+	}
+	
+	/* Summary */
+	
+	/* reset - Forgets the completed processes to start a new run */
+	public void reset(){
+		completed.clear();
+		runStart = -1;
+		runEnd = 0;
+	}
+	
+	public ArrayList<ProcessRecord> getCompleted(){ return completed; }
+	
+	/* getThroughput - Processes completed per 1000 cycles of the run */
+	public double getThroughput(){
+		if(completed.isEmpty() || runEnd <= runStart)
+			return 0.0;
+		
+		return 1000.0 * completed.size() / (runEnd - runStart);
+	}
+	
+	public String getSummaryStr(){
+		StringBuilder out = new StringBuilder();
+		
+		out.append(String.format("Completed\t: %d\n", completed.size()));
+		out.append(String.format("Throughput\t: %.2f per 1000 cycles\n", getThroughput()));
+		out.append(statisticsStr("all", -1));
+		
+		if(M.pager != null)
+			out.append(pagingStr());
+		
+		for(int c=0; c<MAX_CLASSES; c++)
+			out.append(statisticsStr(CLASS_NAME[c], c));
+		
+		return out.toString();
+	}
+	
+	/* statisticsStr - Mean, p50 and p99 of the processes of a priority class, all if -1 */
+	private String statisticsStr(String name, int priorityClass){
+		int n = 0;
+		
+		for(ProcessRecord r : completed){
+			if(priorityClass == -1 || r.priorityClass() == priorityClass)
+				++n;
+		}
+		
+		if(n == 0)
+			return String.format("[%s] no processes\n", name);
+		
+		long turnaround[] = new long[n], waiting[] = new long[n], response[] = new long[n];
+		int i = 0;
+		
+		for(ProcessRecord r : completed){
+			if(priorityClass == -1 || r.priorityClass() == priorityClass){
+				turnaround[i] = r.turnaround();
+				waiting[i] = r.waiting();
+				response[i] = r.response();
+				++i;
+			}
+		}
+		
+		return String.format("[%s] %d processes\n", name, n) +
+				distributionStr("Turnaround", turnaround) +
+				distributionStr("Waiting", waiting) +
+				distributionStr("Response", response);
+	}
+	
+	/* pagingStr - Page faults, evictions and write-backs of the completed processes */
+	private String pagingStr(){
+		long faults = 0, evictions = 0, writeBacks = 0, cpuTime = 0;
+		double maxRate = 0.0;
+		
+		for(ProcessRecord r : completed){
+			faults += r.pageFaults;
+			evictions += r.evictions;
+			writeBacks += r.writeBacks;
+			cpuTime += r.cpuTime;
+			maxRate = Math.max(maxRate, r.faultRate());
+		}
+		
+		return String.format("Page Faults\t: %d (%.2f per 1000 cycles, max %.2f)\nEvictions\t: %d\nWrite-Backs\t: %d\n",
+				faults, cpuTime == 0 ? 0.0 : 1000.0 * faults / cpuTime, maxRate, evictions, writeBacks);
+	}
+	
+	private static String distributionStr(String name, long values[]){
+		Arrays.sort(values);
+		
+		long sum = 0;
+		for(int i=0; i<values.length; i++)
+			sum += values[i];
+		
+		return String.format("  %-10s\t: mean %.1f\tp50 %d\tp99 %d\n", name, (double)sum / values.length,
+				percentile(values, 50), percentile(values, 99));
+	}
+	
+	/* percentile - Nearest rank percentile of sorted values */
+	private static long percentile(long sorted[], int p){
+		int rank = (p * sorted.length + 99) / 100; //ceil(p/100 * n)
+		
+		return sorted[Math.max(rank, 1) - 1];
+	}
+}
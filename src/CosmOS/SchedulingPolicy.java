@@ -0,0 +1,55 @@
+package CosmOS;
+import java.util.LinkedList;
+
+/* SchedulingPolicy:
+ * The algorithm the Scheduler uses to order the ready processes. The
+ * Scheduler owns the blocked queue, the process table and the Processor;
+ * the policy only decides which ready process runs next and for how long.
+ *
+ * A process is handed to the policy when it arrives (enqueue), when the
+ * timer preempts it (onQuantumExpired), when it gives up the CPU with a
+ * system call (onYield) and when it is unblocked (onWake).
+ * It leaves the policy when it is picked to run (pickNext), when it is
+ * blocked (onBlock) or when it is killed (remove).
+ *
+ * Implementations: FCFSPolicy, ShortestJobFirstPolicy, RoundRobinPolicy,
+ * PriorityPolicy, MultilevelFeedbackQueue and FairSharePolicy.
+ * */
+
+public interface SchedulingPolicy {
+	/* enqueue - Adds a newly arrived process */
+	public void enqueue(PCB p);
+	
+	/* pickNext - Removes and returns the process to run next, null if none is ready */
+	public PCB pickNext();
+	
+	/* quantumOf - Instructions the process may run before it is preempted, 0 to run it to completion */
+	public int quantumOf(PCB p);
+	
+	/* onQuantumExpired - Puts back a process the timer preempted after the given number of instructions */
+	public void onQuantumExpired(PCB p, int executed);
+	
+	/* onYield - Puts back a process that gave up the CPU after the given number of instructions */
+	public void onYield(PCB p, int executed);
+	
+	/* onBlock - Takes a ready process off the queue while it is blocked */
+	public void onBlock(PCB p);
+	
+	/* onWake - Puts back a process that was unblocked */
+	public void onWake(PCB p);
+	
+	/* remove - Drops the process, false if it wasn't queued */
+	public boolean remove(PCB p);
+	
+	/* setTimeSlice - Time slice in clock cycles, for the policies that use one */
+	public void setTimeSlice(int cycles);
+	
+	public boolean isEmpty();
+	
+	public int size();
+	
+	/* toList - Returns the ready processes in the order they would run */
+	public LinkedList<PCB> toList();
+	
+	public String getName();
+}
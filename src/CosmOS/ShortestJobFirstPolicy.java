@@ -0,0 +1,62 @@
+package CosmOS;
+import java.util.LinkedList;
+import java.util.TreeMap;
+
+/* ShortestJobFirstPolicy:
+ * Runs the ready process with the smallest size first, to completion.
+ * The size of the program (PCB.getProcessSize) is the estimate of its
+ * run time. Processes of the same size run in the order they arrived.
+ *
+ * The processes are kept in a TreeMap keyed by the size in the high
+ * 32 bits and an arrival number in the low 32 bits, so every key is
+ * unique and picking or removing a process takes O(log n).
+ * */
+
+public class ShortestJobFirstPolicy implements SchedulingPolicy {
+	private TreeMap<Long, PCB> readyQ = new TreeMap<Long, PCB>();
+	
+	/* key - The key of every queued process, indexed by PID */
+	private long key[] = new long[ProcessTable.MAX_PIDS];
+	private int arrivals;
+	
+	public void enqueue(PCB p){
+		long k = ((long)(p.getProcessSize() & 0xFFFF) << 32) | (arrivals++ & 0xFFFFFFFFL);
+		
+		key[p.getPID()] = k;
+		readyQ.put(k, p);
+	}
+	
+	public PCB pickNext(){
+		return readyQ.isEmpty() ? null : readyQ.pollFirstEntry().getValue();
+	}
+	
+	public int quantumOf(PCB p){ return 0; }
+	
+	public void onQuantumExpired(PCB p, int executed){ enqueue(p); }
+	
+	public void onYield(PCB p, int executed){ enqueue(p); }
+	
+	public void onBlock(PCB p){ remove(p); }
+	
+	public void onWake(PCB p){ enqueue(p); }
+	
+	public boolean remove(PCB p){
+		Long k = key[p.getPID()];
+		
+		if(readyQ.get(k) != p)
+			return false;
+		
+		readyQ.remove(k);
+		return true;
+	}
+	
+	public void setTimeSlice(int cycles){ /* not used */ }
+	
+	public boolean isEmpty(){ return readyQ.isEmpty(); }
+	
+	public int size(){ return readyQ.size(); }
+	
+	public LinkedList<PCB> toList(){ return new LinkedList<PCB>(readyQ.values()); }
+	
+	public String getName(){ return "sjf"; }
+}
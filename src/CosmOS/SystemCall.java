@@ -0,0 +1,22 @@
+package CosmOS;
+
+/* SystemCall:
+ * A service of the OS that a process requests with the ACT instruction,
+ * T1 holding the service number and T2 its argument. The Scheduler keeps
+ * the services in a dispatch table indexed by the service number, and
+ * calls the service with the process that made the call. The service
+ * decides what happens to the process: it is killed, requeued or blocked.
+ *
+ * Reference: Scheduler.registerSystemCall()
+ * */
+
+public interface SystemCall {
+	/* Service Numbers */
+	public static final int	SYS_EXIT = 0,	//terminate the process
+							SYS_YIELD = 1,	//give up the rest of the quantum
+							SYS_SLEEP = 2,	//block for T2 cycles
+							SYS_WAIT = 3,	//block until device T2 completes a request
+							MAX_SYSCALLS = 16;
+	
+	public void call(PCB p, int argument);
+}
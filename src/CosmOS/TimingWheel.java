@@ -0,0 +1,190 @@
+package CosmOS;
+import java.util.ArrayList;
+
+/* TimingWheel:
+ * Timers that wake blocked processes at a given cycle of the Processor.
+ * A hashed timing wheel: SLOTS lists, each covering TICK cycles, with a
+ * timer placed in the slot of its deadline. Adding a timer is O(1), and
+ * advancing the wheel only looks at the slots of the ticks that passed.
+ * A timer further away than one turn of the wheel stays in its slot
+ * until the turn it is due in.
+ *
+ * The earliest deadline is cached, so the Scheduler can peek at it in
+ * O(1) when it fast-forwards the clock. It is only looked up again, in
+ * slot order from the current tick, after the earliest timer expired or
+ * was cancelled.
+ * */
+
+public class TimingWheel {
+	public static final int	SLOTS = 256,
+							TICK = 8; //cycles per slot
+	
+	/* Timer */
+	private static class Timer {
+		long deadline;
+		PCB pcb;
+		Timer next;
+	}
+	
+	private Timer slot[] = new Timer[SLOTS];
+	private long currentTick; //every timer of an earlier tick has expired
+	private int pending;
+	
+	/* earliest - Earliest deadline, -1 if there are no timers; only valid while earliestKnown */
+	private long earliest = -1;
+	private boolean earliestKnown = true;
+	
+	/* Reused by every advance, so waking up nobody allocates nothing */
+	private ArrayList<Timer> due = new ArrayList<Timer>();
+	private ArrayList<PCB> expired = new ArrayList<PCB>();
+	
+	/* schedule - Adds a timer that expires at the given cycle */
+	public void schedule(PCB p, long deadline){
+		Timer t = new Timer();
+		t.deadline = deadline;
+		t.pcb = p;
+		
+		int s = (int)((deadline / TICK) % SLOTS);
+		t.next = slot[s];
+		slot[s] = t;
+		++pending;
+		
+		if(earliestKnown && (earliest == -1 || deadline < earliest))
+			earliest = deadline;
+	}
+	
+	/* advance
+	 * Moves the wheel to the given cycle and returns the processes whose
+	 * timers expired, in the order of their deadlines. The list is reused,
+	 * it is only valid until the next call.
+	 * */
+	public ArrayList<PCB> advance(long now){
+		expired.clear();
+		
+		if(pending == 0 || (earliestKnown && earliest > now)){ //nothing can have expired
+			currentTick = now / TICK;
+			return expired;
+		}
+		
+		long lastTick = now / TICK;
+		long ticks = Math.min(lastTick - currentTick + 1, SLOTS); //a full turn visits every slot
+		due.clear();
+		
+		for(long i=0; i<ticks; i++){
+			int s = (int)((currentTick + i) % SLOTS);
+			Timer prev = null;
+			
+			for(Timer t = slot[s]; t != null; t = t.next){
+				if(t.deadline <= now){ //unlink the expired timer
+					if(prev == null)
+						slot[s] = t.next;
+					else
+						prev.next = t.next;
+					
+					due.add(t);
+					--pending;
+				} else {
+					prev = t;
+				}
+			}
+		}
+		
+		currentTick = lastTick;
+		forgetEarliest();
+		
+		//Sort by deadline, few timers expire at once
+		for(int i=1; i<due.size(); i++){
+			Timer t = due.get(i);
+			int j = i-1;
+			
+			while(j >= 0 && due.get(j).deadline > t.deadline){
+				due.set(j+1, due.get(j));
+				--j;
+			}
+			due.set(j+1, t);
+		}
+		
+		for(int i=0; i<due.size(); i++)
+			expired.add(due.get(i).pcb);
+		due.clear(); //drop the references to the expired timers
+		
+		return expired;
+	}
+	
+	/* cancel - Removes the timers of the process, when it is killed */
+	public void cancel(PCB p){
+		if(pending == 0)
+			return;
+		
+		for(int s=0; s<SLOTS; s++){
+			Timer prev = null;
+			
+			for(Timer t = slot[s]; t != null; t = t.next){
+				if(t.pcb == p){
+					if(prev == null)
+						slot[s] = t.next;
+					else
+						prev.next = t.next;
+					--pending;
+					
+					if(t.deadline == earliest)
+						forgetEarliest();
+				} else {
+					prev = t;
+				}
+			}
+		}
+	}
+	
+	/* nextDeadline - Returns the earliest deadline of all the timers, -1 if there are none */
+	public long nextDeadline(){
+		if(!earliestKnown){
+			earliest = findEarliest();
+			earliestKnown = true;
+		}
+		
+		return earliest;
+	}
+	
+	/* forgetEarliest - Marks the cached earliest deadline stale, after timers were removed */
+	private void forgetEarliest(){
+		earliestKnown = pending == 0;
+		earliest = -1;
+	}
+	
+	/* findEarliest
+	 * Visits the slots in the order of their ticks, starting at the
+	 * current one. The first slot holding a timer due in this turn holds
+	 * the earliest deadline; if no timer is due within a turn, every timer
+	 * is looked at.
+	 * */
+	private long findEarliest(){
+		long next = -1;
+		
+		if(pending == 0)
+			return next;
+		
+		for(long tick = currentTick; tick < currentTick + SLOTS; tick++){
+			for(Timer t = slot[(int)(tick % SLOTS)]; t != null; t = t.next){
+				if(t.deadline / TICK <= tick && (next == -1 || t.deadline < next))
+					next = t.deadline;
+			}
+			
+			if(next != -1)
+				return next;
+		}
+		
+		for(int s=0; s<SLOTS; s++){
+			for(Timer t = slot[s]; t != null; t = t.next){
+				if(next == -1 || t.deadline < next)
+					next = t.deadline;
+			}
+		}
+		
+		return next;
+	}
+	
+	public int size(){ return pending; }
+	
+	public boolean isEmpty(){ return pending == 0; }
+}
@@ -0,0 +1,171 @@
+package CosmOS;
+
+/* Trace:
+ * Debug output of the Processor, the MMU and the Scheduler. Events
+ * are recorded as fixed size binary records (event code, clock and
+ * up to four integer arguments) into a ring buffer allocated once,
+ * and are only formatted into text when someone reads them with
+ * drain(). When the ring is full the oldest events are overwritten.
+ *
+ * Every event has a category and a level. Recording checks a single
+ * precomputed bit mask, so an event that is switched off costs one
+ * comparison and no allocation.
+ * */
+
+public class Trace {
+	/* Levels */
+	public static final int	OFF = 0, ERROR = 1, INFO = 2, DEBUG = 3;
+	
+	/* Categories */
+	public static final int	CPU = 0, MMU = 1, SCHEDULER = 2, MAX_CATEGORIES = 3;
+	
+	/* Event codes */
+	public static final int	CPU_FETCH = 0,
+							CPU_INSTRUCTION = 1,
+							CPU_BLOCK = 2,
+							CPU_UNKNOWN_OPCODE = 3,
+							CPU_ILLEGAL_INSTRUCTION = 4,
+							CPU_NO_PROCESS = 5,
+							MMU_SEGMENT_ACCESS = 6,
+							MMU_PAGE_ACCESS = 7,
+							MMU_SEGMENTATION_FAULT = 8,
+							SCHED_CONTEXT_SWITCH = 9,
+							SCHED_EXECUTE = 10,
+							SCHED_SYSCALL = 11,
+							SCHED_WAKEUP = 12,
+							MMU_PAGE_FAULT = 13;
+	
+	private static final int	CATEGORY[] = { CPU, CPU, CPU, CPU, CPU, CPU, MMU, MMU, MMU, SCHEDULER, SCHEDULER, SCHEDULER, SCHEDULER, MMU },
+								LEVEL[] = { DEBUG, DEBUG, DEBUG, ERROR, ERROR, ERROR, DEBUG, DEBUG, ERROR, INFO, DEBUG, INFO, INFO, INFO };
+	
+	private static final String FORMAT[] = {
+		"Processor: CodeCounter => %h",
+		"__Instruction: %2h",
+		"Processor: Ran compiled block, %d instructions",
+		"Unidentified opcode %2h. The instruction code does not exist.",
+		"Terminating process due to illegal instruction.",
+		"Critical Error: No PCB loaded into the CPU. Something really bad happened in the execNextInstruction().",
+		"Segment Access Request => Segment: %d Offset: %d",
+		"Page Access Request => Page: %d Offset: %d",
+		"Segmentation Fault @ Segment: %d, Offset: %d, RegBase: %d, RegLimit: %d",
+		" ***************** Switching Context to PID %d",
+		"#! Executing Instruction for PID %d with priority %d",
+		"System call %d with argument %d from PID %d",
+		"Waking up PID %d",
+		"Page Fault => Page: %d Frame: %d"
+	};
+	
+	public static final int DEFAULT_CAPACITY = 4096;
+	
+	/* Ring Buffer */
+	private int event[], arg0[], arg1[], arg2[], arg3[];
+	private long stamp[];
+	private int head = 0, count = 0, dropped = 0;
+	
+	private int level = ERROR;
+	private boolean categoryEnabled[] = new boolean[MAX_CATEGORIES];
+	private int enabledEvents; //bit mask of the events currently recorded
+	
+	private Processor cpu;
+	
+	public Trace(Processor p, int capacity){
+		cpu = p;
+		
+		event = new int[capacity];
+		stamp = new long[capacity];
+		arg0 = new int[capacity];
+		arg1 = new int[capacity];
+		arg2 = new int[capacity];
+		arg3 = new int[capacity];
+		
+		for(int i=0; i<MAX_CATEGORIES; i++)
+			categoryEnabled[i] = true;
+		updateMask();
+	}
+	
+	/* setLevel - Records the events of the given level and below only */
+	public void setLevel(int lvl){
+		level = lvl;
+		updateMask();
+	}
+	
+	public int getLevel(){ return level; }
+	
+	/* enableCategory - Turns the recording of a whole category on or off */
+	public void enableCategory(int category, boolean flag){
+		categoryEnabled[category] = flag;
+		updateMask();
+	}
+	
+	private void updateMask(){
+		enabledEvents = 0;
+		
+		for(int e=0; e<FORMAT.length; e++){
+			if(LEVEL[e] <= level && categoryEnabled[CATEGORY[e]])
+				enabledEvents |= (1 << e);
+		}
+	}
+	
+	/* isEnabled - Returns true if the given event is currently being recorded */
+	public boolean isEnabled(int e){
+		return (enabledEvents & (1 << e)) != 0;
+	}
+	
+	/* record - Records an event with its arguments, unused arguments are ignored */
+	public void record(int e){ record(e, 0, 0, 0, 0); }
+	
+	public void record(int e, int a0){ record(e, a0, 0, 0, 0); }
+	
+	public void record(int e, int a0, int a1){ record(e, a0, a1, 0, 0); }
+	
+	public void record(int e, int a0, int a1, int a2){ record(e, a0, a1, a2, 0); }
+	
+	public void record(int e, int a0, int a1, int a2, int a3){
+		if((enabledEvents & (1 << e)) == 0)
+			return;
+		
+		int slot = (head + count) % event.length;
+		
+		if(count == event.length){ //overwrite the oldest event
+			head = (head + 1) % event.length;
+			++dropped;
+		} else {
+			++count;
+		}
+		
+		event[slot] = e;
+		stamp[slot] = cpu.cycles();
+		arg0[slot] = a0;
+		arg1[slot] = a1;
+		arg2[slot] = a2;
+		arg3[slot] = a3;
+	}
+	
+	/* drain - Formats the recorded events into a string, one per line,
+	 * and empties the buffer.
+	 * */
+	public String drain(){
+		StringBuilder out = new StringBuilder();
+		
+		if(dropped > 0)
+			out.append(String.format("Trace: %d older events were dropped.\n", dropped));
+		
+		for(int i=0; i<count; i++){
+			int slot = (head + i) % event.length;
+			
+			out.append(String.format("[%5d] ", stamp[slot]));
+			out.append(String.format(FORMAT[event[slot]], arg0[slot], arg1[slot], arg2[slot], arg3[slot]));
+			out.append('\n');
+		}
+		
+		clear();
+		return out.toString();
+	}
+	
+	/* clear - Discards all recorded events */
+	public void clear(){
+		head = 0;
+		count = 0;
+		dropped = 0;
+	}
+}
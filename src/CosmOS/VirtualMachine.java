@@ -24,8 +24,14 @@ public class VirtualMachine{
 		intel				= new Processor(kingston);
 		memManager			= new MemoryManagementUnit(intel);
 		kingston.setMemoryUnit(memManager);
+		if(Boolean.getBoolean("cosmos.mmu.flat")) //-Dcosmos.mmu.flat=true turns the flat translation table on
+			memManager.setFlatTranslation(true);
+		if(Boolean.getBoolean("cosmos.paging")) //-Dcosmos.paging=true turns demand paging on
+			kingston.setPager(new Pager(kingston));
 		processScheduler	= new Scheduler(intel, kingston);
 		programLoader		= new LongTermScheduler(kingston, processScheduler);
+		if(Boolean.getBoolean("cosmos.pcb.cache")) //-Dcosmos.pcb.cache=true keeps the PCB fields in the PCBFieldCache
+			PCB.enableFieldCache(true);
 	}
 	
 	public static void main(String[] args){
@@ -49,8 +49,11 @@ import java.awt.Insets;
 import java.awt.CardLayout;
 import java.io.BufferedWriter;
 import java.io.Console;
+import java.io.File;
 import java.io.FileWriter;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Vector;
 
 import javax.swing.JLabel;
@@ -64,6 +67,9 @@ public class VirtualMachineUI extends JFrame {
 	private static MemoryManagementUnit memManager;
 	//VM Objects End ---
 	
+	/* EXEC_PROCESS_LIMIT - Instructions the execute one process button runs at most */
+	private static final int EXEC_PROCESS_LIMIT = 1 << 20;
+	
 	private JPanel contentPane;
 	
 	//GUI Component Declaration
@@ -109,8 +115,14 @@ public class VirtualMachineUI extends JFrame {
 		intel				= new Processor(kingston);
 		memManager			= new MemoryManagementUnit(intel);
 		kingston.setMemoryUnit(memManager);
+		if(Boolean.getBoolean("cosmos.mmu.flat")) //-Dcosmos.mmu.flat=true turns the flat translation table on
+			memManager.setFlatTranslation(true);
+		if(Boolean.getBoolean("cosmos.paging")) //-Dcosmos.paging=true turns demand paging on
+			kingston.setPager(new Pager(kingston));
 		processScheduler	= new Scheduler(intel, kingston);
 		programLoader		= new LongTermScheduler(kingston, processScheduler);
+		if(Boolean.getBoolean("cosmos.pcb.cache")) //-Dcosmos.pcb.cache=true keeps the PCB fields in the PCBFieldCache
+			PCB.enableFieldCache(true);
 		//VM Constructor End ---
 		
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -192,10 +204,24 @@ public class VirtualMachineUI extends JFrame {
 		loadProcBtn.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent arg0) {
 				JFileChooser fileChooser = new JFileChooser();
+				fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES); //a directory is loaded as a batch
+				fileChooser.setMultiSelectionEnabled(true);
 				int r_value = fileChooser.showOpenDialog(getParent());
 				
 				if(r_value == JFileChooser.APPROVE_OPTION){
-					programLoader.load(fileChooser.getSelectedFile().getName());
+					File selected[] = fileChooser.getSelectedFiles();
+					
+					if(selected.length == 1 && selected[0].isDirectory()){
+						programLoader.loadBatch(selected[0]);
+					} else if(selected.length > 1){
+						List<String> procFileNames = new ArrayList<String>();
+						for(File f : selected)
+							procFileNames.add(f.getPath());
+						
+						programLoader.loadBatch(procFileNames);
+					} else {
+						programLoader.load(fileChooser.getSelectedFile().getName());
+					}
 				}
 			}
 		});
@@ -244,31 +270,20 @@ public class VirtualMachineUI extends JFrame {
 					cosmosConsole.append(">> Execute All Processes\n");
 					processScheduler.run();
 					cosmosConsole.append("Done; Terminating Process(es)...\n");
+					cosmosConsole.append(processScheduler.metrics.getSummaryStr());
 				} else { //do for one process
 					int tmpProcId = readProcIdFromUser();
 					if(tmpProcId == -1) return; //If invalid proc Id was encountered.
 
-					PCB tmpPcbPtr = processScheduler.getPCB(tmpProcId);
-
 					cosmosConsole.append(">> Executed Processes with ID " + tmpProcId + "\n");
 
-					//Switch Context only if the given process is not already running
-					if( intel.currentProcess != null &&
-							intel.currentProcess.getPID() != tmpPcbPtr.getPID() ){
-
-						intel.switchProcessTo(tmpPcbPtr);
-					} else if( intel.currentProcess == null ) {
-						intel.switchProcessTo(tmpPcbPtr);
-					}
-
-					if(intel.currentProcess != null){
-						while(intel.execNextIntruction()); //completely execute the process
-						
+					//Bounded so a looping program can't hang the UI
+					if(processScheduler.runProcess(tmpProcId, EXEC_PROCESS_LIMIT))
 						cosmosConsole.append("Done; Terminating Process(es)...\n");
-						processScheduler.killProcess(tmpProcId); //remove process from all queues
-					} else {
-						cosmosConsole.append("Error: Something really bad happened @ debugProcBtn Event Handler.\n");
-					}
+					else if(processScheduler.getPCB(tmpProcId) != null)
+						cosmosConsole.append("Process " + tmpProcId + " is blocked or ran " + EXEC_PROCESS_LIMIT + " instructions; it stays in the queues.\n");
+					else
+						cosmosConsole.append("Error: No process with ID " + tmpProcId + ".\n");
 				}
 			}
 		});
@@ -304,8 +319,11 @@ public class VirtualMachineUI extends JFrame {
 					}
 					
 					if(intel.currentProcess != null){
+						int traceLevel = intel.trace.getLevel(); //kept if debug mode is on
+						intel.trace.setLevel(Trace.DEBUG);
 						intel.execNextIntruction();
-						cosmosConsole.append(intel.getDebugInfoString());
+						intel.trace.setLevel(traceLevel);
+						cosmosConsole.append(intel.trace.drain());
 					} else {
 						cosmosConsole.append("Error: Something really bad happened @ debugProcBtn Event Handler.\n");
 					}
@@ -386,7 +404,8 @@ public class VirtualMachineUI extends JFrame {
 		memoryDumpBtn.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				int tmpProcId = readProcIdFromUser();
-				String dumpStr = new String();
+				StringBuilder dumpStr = new StringBuilder();
+				byte frameBytes[] = new byte[kingston.FRAME_SIZE];
 				if(tmpProcId == -1)
 					return; //If invalid proc Id was encountered.
 				
@@ -394,19 +413,19 @@ public class VirtualMachineUI extends JFrame {
 				PCB tmpPcbPtr = processScheduler.getPCB(tmpProcId);
 
 				cosmosConsole.append(">> Memory Dump for Proceess " + tmpProcId + "\n");
+				PCB.writeBackAll(); //bring the kernel frames up to date
 				
 				for(int i=0; i<tmpPcbPtr.getPageTableSize(); i++){ //iterate over frames
-					int base = tmpPcbPtr.getPageTableEntry(i) * kingston.FRAME_SIZE;
+					kingston.readPage(tmpPcbPtr, i, frameBytes, 0); //from memory or swap
 					
-					for(int addr=base; addr<(base+kingston.FRAME_SIZE); addr++){//iterate over offset
-						cosmosConsole.append(String.format("%h\n", kingston.readByteFromPhysical(addr)));
-						
+					for(int offset=0; offset<kingston.FRAME_SIZE; offset++){//iterate over offset
 						//Make Dump String
-						dumpStr += String.format("%h\n", kingston.readByteFromPhysical(addr));
+						dumpStr.append(String.format("%h\n", frameBytes[offset]));
 					}
 				}
 				
-				writeStringToFile(dumpStr, tmpProcId + "_" + tmpPcbPtr.getBaseFrame() + " Memory Dump.doc");
+				cosmosConsole.append(dumpStr.toString());
+				writeStringToFile(dumpStr.toString(), tmpProcId + "_" + tmpPcbPtr.getBaseFrame() + " Memory Dump.doc");
 				cosmosConsole.append("Done.\n");
 			}
 		});
@@ -430,7 +449,12 @@ public class VirtualMachineUI extends JFrame {
 				appendTextToConsole("Page #\tFrame #\tPhysical Address");
 				
 				for(int i=0; i<tmpPcbPtr.getPageTableSize(); i++){
-					appendTextToConsole(i + "\t" + tmpPcbPtr.getPageTableEntry(i).toString() + "\t" + (tmpPcbPtr.getPageTableEntry(i)*kingston.FRAME_SIZE) );
+					int frameNum = tmpPcbPtr.getPageFrame(i);
+					
+					if(frameNum == -1)
+						appendTextToConsole(i + "\t-\tnot in memory");
+					else
+						appendTextToConsole(i + "\t" + frameNum + "\t" + (frameNum*kingston.FRAME_SIZE) );
 				}
 			}
 		});
@@ -505,7 +529,8 @@ public class VirtualMachineUI extends JFrame {
 				appendTextToConsole(">> Display PageTable for PID " + tmpProcId);
 				appendTextToConsole("Page #\tFrame #");
 				for(int i=0; i<tmpPcbPtr.getPageTableSize(); i++){
-					appendTextToConsole(i + "\t" + tmpPcbPtr.getPageTableEntry(i).toString());
+					int frameNum = tmpPcbPtr.getPageFrame(i);
+					appendTextToConsole(i + "\t" + (frameNum == -1 ? "-" : String.valueOf(frameNum)));
 				}
 			}
 		});
@@ -547,8 +572,9 @@ public class VirtualMachineUI extends JFrame {
 					PCB tmpPcbPtr = tmpProcList.get(i);
 					cosmosConsole.append(tmpPcbPtr.getPID() + "\t[ "); //print pid
 					
-					for(int j=0; j<tmpPcbPtr.getPageTableSize(); j++){ //print list
-						cosmosConsole.append(tmpPcbPtr.getPageTableEntry(j) + " ");
+					for(int j=0; j<tmpPcbPtr.getPageTableSize(); j++){ //print list, pages not in memory have no frame
+						if(tmpPcbPtr.getPageFrame(j) != -1)
+							cosmosConsole.append(tmpPcbPtr.getPageFrame(j) + " ");
 					}
 					
 					cosmosConsole.append("]\n"); //print closing bracket